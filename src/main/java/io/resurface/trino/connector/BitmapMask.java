@@ -0,0 +1,61 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+// matches rows where bitwise_and(column, mask) <> 0
+public class BitmapMask {
+
+    @JsonCreator
+    public BitmapMask(
+            @JsonProperty("ordinalPosition") int ordinalPosition,
+            @JsonProperty("mask") long mask) {
+        this.mask = mask;
+        this.ordinalPosition = ordinalPosition;
+    }
+
+    private final long mask;
+    private final int ordinalPosition;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BitmapMask that = (BitmapMask) o;
+        return mask == that.mask && ordinalPosition == that.ordinalPosition;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mask, ordinalPosition);
+    }
+
+    @JsonProperty
+    public long getMask() {
+        return mask;
+    }
+
+    @JsonProperty
+    public int getOrdinalPosition() {
+        return ordinalPosition;
+    }
+
+    public boolean test(long bitmap) {
+        return (bitmap & mask) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("ordinalPosition", ordinalPosition)
+                .add("mask", mask)
+                .toString();
+    }
+
+}
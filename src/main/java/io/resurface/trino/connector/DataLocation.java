@@ -11,35 +11,67 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
 
-import static com.google.common.base.Preconditions.checkState;
 import static io.resurface.trino.connector.ResurfaceErrorCode.RESURFACE_FILESYSTEM_ERROR;
 import static java.nio.file.Files.newDirectoryStream;
 import static java.util.Objects.requireNonNull;
 
 final class DataLocation {
 
+    // a listing taken within this long of the directory's mtime may have missed a change made in the same tick
+    private static final long RACY_MILLIS = 1000;
+
     @JsonCreator
     public DataLocation(@JsonProperty("location") String location) {
+        this(location, new ResurfaceStats());
+    }
+
+    public DataLocation(String location, ResurfaceStats stats) {
         requireNonNull(location, "location is null");
         this.location = new File(location);
+        this.stats = requireNonNull(stats, "stats is null");
     }
 
+    private volatile Listing listing;
     private final File location;
+    private final ResurfaceStats stats;
 
     public List<File> files() {
-        checkState(location.exists(), "location %s doesn't exist", location);
-        checkState(location.isDirectory(), "location %s is not a directory", location);
+        Listing cached = listing;
+        long modified = location.lastModified();
+        if (cached != null && cached.modified == modified && cached.listedAt - modified > RACY_MILLIS) {
+            stats.recordListingHit();
+            return cached.files;
+        }
+
+        if (!location.isDirectory()) throw new TrinoException(RESURFACE_FILESYSTEM_ERROR, "Location doesn't exist or is not a directory: " + location);
+        long start = System.nanoTime();
+        long listedAt = System.currentTimeMillis();
         try (DirectoryStream<Path> paths = newDirectoryStream(location.toPath())) {
             ImmutableList.Builder<File> builder = ImmutableList.builder();
             for (Path path : paths) builder.add(path.toFile());
             List<File> files = builder.build();
-            return files.isEmpty() ? new ArrayList<>() : new ArrayList<>(files);
+            listing = new Listing(modified, listedAt, files);
+            stats.recordListingMiss(System.nanoTime() - start);
+            return files;
         } catch (IOException e) {
             throw new TrinoException(RESURFACE_FILESYSTEM_ERROR, "Error listing files in directory: " + location, e);
         }
     }
 
+    private static final class Listing {
+
+        Listing(long modified, long listedAt, List<File> files) {
+            this.modified = modified;
+            this.listedAt = listedAt;
+            this.files = files;
+        }
+
+        final List<File> files;
+        final long listedAt;
+        final long modified;
+
+    }
+
 }
@@ -8,9 +8,6 @@ import io.trino.spi.block.MapBlockBuilder;
 import io.trino.spi.function.*;
 import io.trino.spi.type.StandardTypes;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 import static io.trino.spi.type.DoubleType.DOUBLE;
 import static io.trino.spi.type.VarcharType.VARCHAR;
 
@@ -22,28 +19,25 @@ public final class Histosum {
 
     @InputFunction
     public static void input(@AggregationState HistosumState state, @SqlType(StandardTypes.VARCHAR) Slice key, @SqlType(StandardTypes.DOUBLE) double value) {
-        String k = key.toStringUtf8();
-        Map<String, Double> m = state.getMap();
-
+        HistosumMap m = state.getMap();
         if (m == null) {
-            LinkedHashMap<String, Double> seed = new LinkedHashMap<>();
-            seed.put(k, value);
-            state.setMap(seed);
-        } else {
-            m.put(k, value + m.getOrDefault(k, 0.0));
+            m = new HistosumMap();
+            state.setMap(m);
         }
+        long size = m.getRetainedSizeInBytes();
+        m.add(key, value);
+        state.addMemoryUsage(m.getRetainedSizeInBytes() - size);
     }
 
     @CombineFunction
     public static void combine(@AggregationState HistosumState s1, @AggregationState HistosumState s2) {
-        Map<String, Double> m1 = s1.getMap();
-        Map<String, Double> m2 = s2.getMap();
+        HistosumMap m1 = s1.getMap();
+        HistosumMap m2 = s2.getMap();
 
         if ((m1 != null) && (m2 != null)) {
-            for (Map.Entry<String, Double> e : m2.entrySet()) {
-                String k = e.getKey();
-                m1.put(k, e.getValue() + m1.getOrDefault(k, 0.0));
-            }
+            long size = m1.getRetainedSizeInBytes();
+            m1.addAll(m2);
+            s1.addMemoryUsage(m1.getRetainedSizeInBytes() - size);
         } else if (m1 == null) {
             s1.setMap(m2);
         }
@@ -51,15 +45,17 @@ public final class Histosum {
 
     @OutputFunction("map(varchar,double)")
     public static void output(@AggregationState HistosumState state, BlockBuilder out) {
-        Map<String, Double> m = state.getMap();
+        HistosumMap m = state.getMap();
 
         if (m == null) {
             out.appendNull();
         } else {
-            ((MapBlockBuilder) out).buildEntry((keyBuilder, valueBuilder) -> state.getMap().forEach((key, value) -> {
-                VARCHAR.writeString(keyBuilder, key);
-                DOUBLE.writeDouble(valueBuilder, value);
-            }));
+            ((MapBlockBuilder) out).buildEntry((keyBuilder, valueBuilder) -> {
+                for (int i = 0; i < m.size(); i++) {
+                    VARCHAR.writeSlice(keyBuilder, m.getKey(i));
+                    DOUBLE.writeDouble(valueBuilder, m.getValue(i));
+                }
+            });
         }
     }
 
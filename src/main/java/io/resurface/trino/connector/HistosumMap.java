@@ -0,0 +1,91 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
+
+public class HistosumMap {
+
+    private static final int INSTANCE_SIZE = instanceSize(HistosumMap.class);
+
+    public HistosumMap() {
+        this.keys = new Slice[4];
+        this.values = new double[4];
+        this.table = new int[8];
+        Arrays.fill(table, -1);
+    }
+
+    private long keyBytes;
+    private Slice[] keys;
+    private int size;
+    private int[] table;  // open addressing over entry positions, -1 marks an empty bucket
+    private double[] values;
+
+    public void add(Slice key, double value) {
+        int mask = table.length - 1;
+        int bucket = mix(key.hashCode()) & mask;
+        while (table[bucket] != -1) {
+            int position = table[bucket];
+            if (keys[position].equals(key)) {
+                values[position] += value;
+                return;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        // keys usually point into a shared block, so keep a compact copy instead
+        Slice copy = Slices.copyOf(key);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = copy;
+        values[size] = value;
+        keyBytes += copy.getRetainedSize();
+        table[bucket] = size++;
+        if (size * 2 > table.length) rehash(table.length * 2);
+    }
+
+    public void addAll(HistosumMap other) {
+        for (int i = 0; i < other.size; i++) add(other.keys[i], other.values[i]);
+    }
+
+    public Slice getKey(int position) {
+        return keys[position];
+    }
+
+    public long getRetainedSizeInBytes() {
+        return INSTANCE_SIZE + sizeOf(keys) + keyBytes + sizeOf(values) + sizeOf(table);
+    }
+
+    public double getValue(int position) {
+        return values[position];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, -1);
+        int mask = capacity - 1;
+        for (int position = 0; position < size; position++) {
+            int bucket = mix(keys[position].hashCode()) & mask;
+            while (table[bucket] != -1) bucket = (bucket + 1) & mask;
+            table[bucket] = position;
+        }
+    }
+
+}
@@ -5,13 +5,13 @@ package io.resurface.trino.connector;
 import io.trino.spi.function.AccumulatorState;
 import io.trino.spi.function.AccumulatorStateMetadata;
 
-import java.util.Map;
-
 @AccumulatorStateMetadata(stateFactoryClass = HistosumStateFactory.class, stateSerializerClass = HistosumStateSerializer.class)
 public interface HistosumState extends AccumulatorState {
 
-    Map<String, Double> getMap();
+    void addMemoryUsage(long bytes);
+
+    HistosumMap getMap();
 
-    void setMap(Map<String, Double> value);
+    void setMap(HistosumMap value);
 
 }
@@ -6,8 +6,8 @@ import io.trino.spi.function.AccumulatorStateFactory;
 import io.trino.spi.function.GroupedAccumulatorState;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
 
 public class HistosumStateFactory implements AccumulatorStateFactory<HistosumState> {
 
@@ -20,24 +20,31 @@ public class HistosumStateFactory implements AccumulatorStateFactory<HistosumSta
 
     public static class SingleHistosumState implements HistosumState {
 
+        private static final int INSTANCE_SIZE = instanceSize(SingleHistosumState.class);
+
         public SingleHistosumState() {
-            this.map = new LinkedHashMap<>();
+            this.map = new HistosumMap();
         }
 
-        private Map<String, Double> map;
+        private HistosumMap map;
+
+        @Override
+        public void addMemoryUsage(long bytes) {
+            // computed from the map on demand
+        }
 
         @Override
         public long getEstimatedSize() {
-            return map == null ? 0L : map.size();
+            return INSTANCE_SIZE + (map == null ? 0L : map.getRetainedSizeInBytes());
         }
 
         @Override
-        public Map<String, Double> getMap() {
+        public HistosumMap getMap() {
             return map;
         }
 
         @Override
-        public void setMap(Map<String, Double> m) {
+        public void setMap(HistosumMap m) {
             this.map = m;
         }
 
@@ -50,12 +57,20 @@ public class HistosumStateFactory implements AccumulatorStateFactory<HistosumSta
 
     public static class GroupedHistosumState implements GroupedAccumulatorState, HistosumState {
 
+        private static final int INSTANCE_SIZE = instanceSize(GroupedHistosumState.class);
+
         public GroupedHistosumState() {
             this.maps = new ObjectArrayList<>();
         }
 
         private int groupId;
-        private final ObjectArrayList<Map<String, Double>> maps;
+        private final ObjectArrayList<HistosumMap> maps;
+        private long mapBytes;
+
+        @Override
+        public void addMemoryUsage(long bytes) {
+            mapBytes += bytes;
+        }
 
         @Override
         public void ensureCapacity(int size) {
@@ -64,11 +79,11 @@ public class HistosumStateFactory implements AccumulatorStateFactory<HistosumSta
 
         @Override
         public long getEstimatedSize() {
-            return maps.size();
+            return INSTANCE_SIZE + sizeOf(maps.elements()) + mapBytes;
         }
 
         @Override
-        public Map<String, Double> getMap() {
+        public HistosumMap getMap() {
             return maps.get(groupId);
         }
 
@@ -78,8 +93,10 @@ public class HistosumStateFactory implements AccumulatorStateFactory<HistosumSta
         }
 
         @Override
-        public void setMap(Map<String, Double> m) {
-            maps.set(groupId, m);
+        public void setMap(HistosumMap m) {
+            HistosumMap old = maps.set(groupId, m);
+            if (old != null) mapBytes -= old.getRetainedSizeInBytes();
+            if (m != null) mapBytes += m.getRetainedSizeInBytes();
         }
 
     }
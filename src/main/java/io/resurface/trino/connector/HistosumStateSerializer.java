@@ -2,59 +2,58 @@
 
 package io.resurface.trino.connector;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.airlift.json.ObjectMapperProvider;
 import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
 import io.airlift.slice.Slices;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AccumulatorStateSerializer;
 import io.trino.spi.type.Type;
 
-import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
-
-import static io.trino.spi.type.VarcharType.VARCHAR;
+import static io.airlift.slice.SizeOf.SIZE_OF_DOUBLE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
 
 public class HistosumStateSerializer implements AccumulatorStateSerializer<HistosumState> {
 
+    // entry count, then (key length, key bytes, value) for each entry in insertion order
     @Override
     public void deserialize(Block block, int index, HistosumState state) {
-        Slice slice = VARCHAR.getSlice(block, index);
-        try {
-            state.setMap(new LinkedHashMap<>(OBJECT_MAPPER.readValue(slice.getBytes(), new TypeReference<LinkedHashMap<String, Double>>() {})));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        SliceInput in = VARBINARY.getSlice(block, index).getInput();
+        int size = in.readInt();
+        HistosumMap map = new HistosumMap();
+        for (int i = 0; i < size; i++) {
+            Slice key = in.readSlice(in.readInt());
+            map.add(key, in.readDouble());
         }
+        state.setMap(map);
     }
 
     @Override
     public Type getSerializedType() {
-        return VARCHAR;
+        return VARBINARY;
     }
 
     @Override
     public void serialize(HistosumState state, BlockBuilder out) {
-        if (state.getMap() == null) {
+        HistosumMap map = state.getMap();
+        if (map == null) {
             out.appendNull();
         } else {
-            VARCHAR.writeSlice(out, Slices.utf8Slice(toJSON(state.getMap())));
+            int length = SIZE_OF_INT;
+            for (int i = 0; i < map.size(); i++) length += SIZE_OF_INT + map.getKey(i).length() + SIZE_OF_DOUBLE;
+            Slice slice = Slices.allocate(length);
+            SliceOutput output = slice.getOutput();
+            output.writeInt(map.size());
+            for (int i = 0; i < map.size(); i++) {
+                Slice key = map.getKey(i);
+                output.writeInt(key.length());
+                output.writeBytes(key);
+                output.writeDouble(map.getValue(i));
+            }
+            VARBINARY.writeSlice(out, slice);
         }
     }
 
-    public static String toJSON(Map<String, Double> map) {
-        try {
-            ObjectNode node = OBJECT_MAPPER.createObjectNode();
-            for (Map.Entry<String, Double> e : map.entrySet()) node.put(e.getKey(), e.getValue());
-            return OBJECT_MAPPER.writeValueAsString(node);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperProvider().get();
-
 }
@@ -0,0 +1,88 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import it.unimi.dsi.fastutil.io.MeasurableInputStream;
+import it.unimi.dsi.fastutil.io.RepositionableStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.nio.file.StandardOpenOption.READ;
+
+public class MappedFileInputStream extends MeasurableInputStream implements RepositionableStream {
+
+    public MappedFileInputStream(File file) throws IOException {
+        this.arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        this.length = segment.byteSize();
+    }
+
+    private final Arena arena;
+    private boolean closed;
+    private final long length;
+    private long position;
+    private final MemorySegment segment;
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            arena.close();
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void position(long newPosition) {
+        this.position = Math.max(0, Math.min(length, newPosition));
+    }
+
+    @Override
+    public int read() {
+        return (position < length) ? (segment.get(JAVA_BYTE, position++) & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        if (position >= length) return -1;
+        int n = (int) Math.min(len, length - position);
+        MemorySegment.copy(segment, JAVA_BYTE, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long start = position;
+        position(position + Math.max(0, n));
+        return position - start;
+    }
+
+}
@@ -0,0 +1,133 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.Page;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.connector.ConnectorPageSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.COUNT_ALL;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SIZE_RESPONSE_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SIZE_TOTAL_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SUM_SIZE_RESPONSE_BYTES;
+import static io.trino.spi.StandardErrorCode.NUMERIC_VALUE_OUT_OF_RANGE;
+import static io.trino.spi.type.BigintType.BIGINT;
+
+public class MessageAggregatePageSource implements ConnectorPageSource {
+
+    // columns that can be summed, indexed by position in this array
+    private static final int[] SUM_ORDINALS = {SIZE_RESPONSE_BYTES.getOrdinalPosition(), SIZE_TOTAL_BYTES.getOrdinalPosition()};
+
+    public MessageAggregatePageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle) {
+        this.columns = columns;
+        this.handle = handle;
+        this.tables = tables;
+    }
+
+    private final List<ResurfaceColumnHandle> columns;
+    private long completed_bytes;
+    private long count;
+    private boolean finished;
+    private final ResurfaceTableHandle handle;
+    private final long[] nonNulls = new long[SUM_ORDINALS.length];
+    private long read_nanos;
+    private final long[] sums = new long[SUM_ORDINALS.length];
+    private final ResurfaceTables tables;
+
+    @Override
+    public void close() {
+        finished = true;
+    }
+
+    @Override
+    public long getCompletedBytes() {
+        return completed_bytes;
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return 0;
+    }
+
+    @Override
+    public Page getNextPage() {
+        if (finished) return null;
+        finished = true;
+        long start = System.nanoTime();
+
+        // closed shards are answered from their index, everything else is scanned
+        String open_file = tables.getOpenFile();
+        List<File> scanned = new ArrayList<>();
+        for (int slab = 1; slab <= tables.getMessagesSlabs(); slab++) {
+            for (File f : tables.getFiles(handle, slab)) {
+                ShardIndex index = f.getName().equals(open_file) ? null : tables.getIndex(f);
+                if (index == null) {
+                    scanned.add(f);
+                } else {
+                    count += index.getRowCount();
+                    for (int i = 0; i < SUM_ORDINALS.length; i++) {
+                        nonNulls[i] += index.getNonNullCount(SUM_ORDINALS[i]);
+                        sums[i] = add(sums[i], index.getSum(SUM_ORDINALS[i]));
+                    }
+                }
+            }
+        }
+
+        try (MessageReader reader = new MessageReader(tables, handle, scanned)) {
+            while (reader.next()) {
+                count++;
+                for (int i = 0; i < SUM_ORDINALS.length; i++) {
+                    if (reader.isNull(SUM_ORDINALS[i])) continue;
+                    nonNulls[i]++;
+                    sums[i] = add(sums[i], reader.getLong(SUM_ORDINALS[i]));
+                }
+            }
+            reader.close();
+            completed_bytes = reader.getCompletedBytes();
+        }
+        read_nanos = System.nanoTime() - start;
+
+        Block[] blocks = new Block[columns.size()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            BlockBuilder out = BIGINT.createBlockBuilder(null, 1);
+            ResurfaceColumnHandle column = columns.get(channel);
+            if (column.equals(COUNT_ALL)) {
+                BIGINT.writeLong(out, count);
+            } else {
+                int i = column.equals(SUM_SIZE_RESPONSE_BYTES) ? 0 : 1;
+                if (nonNulls[i] == 0) {
+                    out.appendNull();
+                } else {
+                    BIGINT.writeLong(out, sums[i]);
+                }
+            }
+            blocks[channel] = out.build();
+        }
+        return new Page(1, blocks);
+    }
+
+    @Override
+    public long getReadTimeNanos() {
+        return read_nanos;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw new TrinoException(NUMERIC_VALUE_OUT_OF_RANGE, "bigint addition overflow: " + a + " + " + b);
+        }
+    }
+
+}
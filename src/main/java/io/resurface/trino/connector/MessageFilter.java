@@ -0,0 +1,80 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.type.VarcharType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class MessageFilter {
+
+    // returns null when every row matches
+    public static MessageFilter of(TupleDomain<ColumnHandle> constraint, List<BitmapMask> masks) {
+        BitmapMask[] bitmaps = masks.toArray(new BitmapMask[0]);
+        if (constraint.isNone()) return new MessageFilter(bitmaps, new int[0], new Domain[0], new boolean[0], true);
+        if (constraint.isAll() && bitmaps.length == 0) return null;
+
+        // numeric columns first, since those are checked without building any slices
+        List<Map.Entry<ColumnHandle, Domain>> entries = new ArrayList<>(constraint.getDomains().orElseThrow().entrySet());
+        entries.removeIf(e -> e.getValue().isAll());
+        entries.sort(Comparator.comparing((Map.Entry<ColumnHandle, Domain> e) -> isSlice((ResurfaceColumnHandle) e.getKey())));
+        if (entries.isEmpty() && bitmaps.length == 0) return null;
+
+        int[] ordinals = new int[entries.size()];
+        Domain[] domains = new Domain[entries.size()];
+        boolean[] slices = new boolean[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            ResurfaceColumnHandle column = (ResurfaceColumnHandle) entries.get(i).getKey();
+            ordinals[i] = column.getOrdinalPosition();
+            domains[i] = entries.get(i).getValue();
+            slices[i] = isSlice(column);
+        }
+        return new MessageFilter(bitmaps, ordinals, domains, slices, false);
+    }
+
+    private static boolean isSlice(ResurfaceColumnHandle column) {
+        return column.getColumnType() instanceof VarcharType;
+    }
+
+    private MessageFilter(BitmapMask[] bitmaps, int[] ordinals, Domain[] domains, boolean[] slices, boolean none) {
+        this.bitmaps = bitmaps;
+        this.domains = domains;
+        this.none = none;
+        this.ordinals = ordinals;
+        this.slices = slices;
+    }
+
+    private final BitmapMask[] bitmaps;
+    private final Domain[] domains;
+    private final boolean none;
+    private final int[] ordinals;
+    private final boolean[] slices;
+
+    public boolean isNone() {
+        return none;
+    }
+
+    public boolean test(MessageReader reader) {
+        if (none) return false;
+        for (BitmapMask bitmap : bitmaps) {
+            if (!bitmap.test(reader.getLong(bitmap.getOrdinalPosition()))) return false;
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            int ordinal = ordinals[i];
+            if (reader.isNull(ordinal)) {
+                if (!domains[i].isNullAllowed()) return false;
+            } else {
+                Object value = slices[i] ? reader.getSlice(ordinal) : (Object) reader.getLong(ordinal);
+                if (!domains[i].getValues().containsValue(value)) return false;
+            }
+        }
+        return true;
+    }
+
+}
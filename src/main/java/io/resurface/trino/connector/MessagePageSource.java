@@ -0,0 +1,253 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.Page;
+import io.trino.spi.PageBuilder;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.block.IntArrayBlockBuilder;
+import io.trino.spi.block.LongArrayBlockBuilder;
+import io.trino.spi.block.VariableWidthBlockBuilder;
+import io.trino.spi.connector.ConnectorPageSource;
+import io.trino.spi.connector.DynamicFilter;
+import io.trino.spi.type.Type;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.IntegerType.INTEGER;
+
+public class MessagePageSource implements ConnectorPageSource {
+
+    private static final int MAX_ROWS_PER_PAGE = 8192;
+
+    private static final byte KIND_BIGINT = 0;
+    private static final byte KIND_INTEGER = 1;
+    private static final byte KIND_VARCHAR = 2;
+    private static final byte KIND_NULL = 3;
+
+    private static final byte NULLABLE = 0;
+    private static final byte NEVER_NULL = 1;
+
+    public MessagePageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, ResurfaceSplit split) {
+        this(tables, columns, handle, split, DynamicFilter.EMPTY);
+    }
+
+    public MessagePageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, ResurfaceSplit split,
+                             DynamicFilter dynamicFilter) {
+        this(tables, columns, handle, (handle.getLimit().isPresent() || handle.getNewest().isPresent()) ? null : tables.getMessagesCache());
+
+        // closed shards already in the cache are served from there, and left out of the scan
+        List<File> files = tables.getFiles(handle, split);
+        if (cache != null) {
+            List<File> uncached = new ArrayList<>();
+            for (File f : files) {
+                if (f.getName().equals(open_file)) {
+                    // the open shard is read last, picking up where the last scan of it stopped
+                    if (incremental && !handle.getConstraint().isNone()) {
+                        open_shard = new OpenShardPageSource(tables, cache, columns, handle, f);
+                    } else {
+                        uncached.add(f);
+                    }
+                    continue;
+                }
+                List<Page> pages = cache.get(f, cache_columns, handle);
+                if (pages == null) {
+                    uncached.add(f);
+                } else {
+                    stage(pages);
+                }
+            }
+            files = uncached;
+        }
+        this.reader = new MessageReader(tables, handle, files, dynamicFilter);
+        if (cache != null) reader.setShardListener(this::endShard);
+    }
+
+    // returns whatever the given reader does, without going through the cache
+    MessagePageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, MessageReader reader) {
+        this(tables, columns, handle, (ShardPageCache) null);
+        this.reader = reader;
+    }
+
+    private MessagePageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, ShardPageCache cache) {
+        this.column_kinds = new byte[columns.size()];
+        this.column_nullability = new byte[columns.size()];
+        this.column_ordinal_positions = new int[columns.size()];
+        List<Type> types = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            Type type = columns.get(i).getColumnType();
+            int ordinal = columns.get(i).getOrdinalPosition();
+            if (MessageReader.isAlwaysNull(ordinal)) {
+                this.column_kinds[i] = KIND_NULL;
+            } else {
+                this.column_kinds[i] = type.equals(BIGINT) ? KIND_BIGINT : type.equals(INTEGER) ? KIND_INTEGER : KIND_VARCHAR;
+            }
+            this.column_nullability[i] = MessageReader.isNeverNull(ordinal) ? NEVER_NULL : NULLABLE;
+            this.column_ordinal_positions[i] = ordinal;
+            types.add(type);
+        }
+        this.pageBuilder = new PageBuilder(types);
+        this.stats = tables.getStats();
+        this.cache = cache;
+        this.cache_columns = columns.stream().map(ResurfaceColumnHandle::getOrdinalPosition).toList();
+        this.handle = handle;
+        this.incremental = cache != null && tables.isMessagesIncrementalTail();
+        this.open_file = cache == null ? null : tables.getOpenFile();
+    }
+
+    private final ShardPageCache cache;
+    private final List<Integer> cache_columns;
+    private final ArrayDeque<Page> cached = new ArrayDeque<>();
+    private long cached_bytes;
+    private final byte[] column_kinds;
+    private final byte[] column_nullability;
+    private final int[] column_ordinal_positions;
+    private boolean finished;
+    private final ResurfaceTableHandle handle;
+    private final boolean incremental;
+    private final String open_file;
+    private OpenShardPageSource open_shard;
+    private final PageBuilder pageBuilder;
+    private MessageReader reader;
+    private long read_nanos;
+    private final List<ShardEnd> shard_ends = new ArrayList<>();
+    private long shard_bytes;
+    private List<Page> shard_pages = new ArrayList<>();
+    private final ResurfaceStats stats;
+
+    @Override
+    public void close() {
+        reader.close();
+        stats.recordMaterialization(Math.max(0, read_nanos - reader.getDecodeNanos()));
+        if (open_shard != null) open_shard.close();
+    }
+
+    @Override
+    public long getCompletedBytes() {
+        return open_shard == null ? reader.getCompletedBytes() : reader.getCompletedBytes() + open_shard.getCompletedBytes();
+    }
+
+    // includes cached pages waiting to be returned, and pages collected for caching the shard being read
+    @Override
+    public long getMemoryUsage() {
+        long collected = shard_pages == null ? 0 : shard_bytes;
+        long open = open_shard == null ? 0 : open_shard.getMemoryUsage();
+        return pageBuilder.getRetainedSizeInBytes() + reader.getPrefetchedBytes() + cached_bytes + collected + open;
+    }
+
+    private void stage(List<Page> pages) {
+        for (Page page : pages) {
+            cached.add(page);
+            cached_bytes += page.getRetainedSizeInBytes();
+        }
+    }
+
+    @Override
+    public Page getNextPage() {
+        if (!cached.isEmpty()) {
+            Page page = cached.poll();
+            cached_bytes -= page.getRetainedSizeInBytes();
+            return page;
+        }
+        if (!finished) {
+            long start = System.nanoTime();
+            try {
+                Page page = buildNextPage();
+                if (page != null) return page;
+            } finally {
+                read_nanos += System.nanoTime() - start;
+            }
+        }
+        return open_shard == null ? null : open_shard.getNextPage();
+    }
+
+    private Page buildNextPage() {
+        while (!pageBuilder.isFull() && pageBuilder.getPositionCount() < MAX_ROWS_PER_PAGE) {
+            if (!reader.next()) {
+                finished = true;
+                break;
+            }
+            pageBuilder.declarePosition();
+            for (int channel = 0; channel < column_ordinal_positions.length; channel++) appendField(channel);
+        }
+
+        if (pageBuilder.isEmpty()) {
+            if (cache != null) cacheShards(null);
+            return null;
+        }
+        Page page = pageBuilder.build();
+        pageBuilder.reset();
+        if (cache != null) cacheShards(page);
+        return page;
+    }
+
+    private void endShard(File shard) {
+        boolean cacheable = !shard.getName().equals(open_file) && !reader.isDynamicallyFiltered();
+        shard_ends.add(new ShardEnd(shard, pageBuilder.getPositionCount(), cacheable));
+    }
+
+    // splits the page at shard boundaries, and caches the rows of each shard that was read to the end
+    private void cacheShards(Page page) {
+        int start = 0;
+        for (ShardEnd end : shard_ends) {
+            addShardPage(page, start, end.position());
+            if (end.cacheable() && shard_pages != null) cache.put(end.shard(), cache_columns, handle, shard_pages);
+            shard_bytes = 0;
+            shard_pages = new ArrayList<>();
+            start = end.position();
+        }
+        shard_ends.clear();
+        if (page != null) addShardPage(page, start, page.getPositionCount());
+    }
+
+    private void addShardPage(Page page, int start, int end) {
+        if (page == null || shard_pages == null || start == end) return;
+        Page region = (start == 0 && end == page.getPositionCount()) ? page : copyRegion(page, start, end);
+        shard_bytes += region.getRetainedSizeInBytes();
+        if (cache.fits(shard_bytes)) {
+            shard_pages.add(region);
+        } else {
+            shard_pages = null;  // too big to ever stay cached, so stop holding on to its pages
+        }
+    }
+
+    static Page copyRegion(Page page, int start, int end) {
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) blocks[channel] = page.getBlock(channel).copyRegion(start, end - start);
+        return new Page(end - start, blocks);
+    }
+
+    private void appendField(int channel) {
+        BlockBuilder out = pageBuilder.getBlockBuilder(channel);
+        int ordinal = column_ordinal_positions[channel];
+        byte kind = column_kinds[channel];
+        if ((kind == KIND_NULL) || (column_nullability[channel] == NULLABLE && reader.isNull(ordinal))) {
+            out.appendNull();
+        } else {
+            switch (kind) {
+                case KIND_BIGINT -> ((LongArrayBlockBuilder) out).writeLong(reader.getLong(ordinal));
+                case KIND_INTEGER -> ((IntArrayBlockBuilder) out).writeInt((int) reader.getLong(ordinal));
+                default -> ((VariableWidthBlockBuilder) out).writeEntry(reader.getSlice(ordinal));
+            }
+        }
+    }
+
+    @Override
+    public long getReadTimeNanos() {
+        return open_shard == null ? read_nanos : read_nanos + open_shard.getReadTimeNanos();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished && pageBuilder.isEmpty() && cached.isEmpty() && (open_shard == null || open_shard.isFinished());
+    }
+
+    private record ShardEnd(File shard, int position, boolean cacheable) {
+    }
+
+}
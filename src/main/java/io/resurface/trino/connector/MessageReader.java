@@ -0,0 +1,676 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.log.Logger;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.resurface.binfiles.CompressedHttpMessage;
+import io.resurface.binfiles.PersistentHttpMessage;
+import io.resurface.binfiles.PersistentHttpMessageString;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.connector.DynamicFilter;
+import io.trino.spi.predicate.TupleDomain;
+import it.unimi.dsi.fastutil.io.FastBufferedInputStream;
+import it.unimi.dsi.fastutil.io.MeasurableInputStream;
+import it.unimi.dsi.fastutil.io.RepositionableStream;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongPriorityQueue;
+
+import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.COLUMNS;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.INTERVAL_MILLIS;
+
+public class MessageReader implements Closeable {
+
+    public MessageReader(ResurfaceTables tables, ResurfaceTableHandle handle, ResurfaceSplit split) {
+        this(tables, handle, split, DynamicFilter.EMPTY);
+    }
+
+    public MessageReader(ResurfaceTables tables, ResurfaceTableHandle handle, ResurfaceSplit split, DynamicFilter dynamicFilter) {
+        this(tables, handle, tables.getFiles(handle, split), dynamicFilter);
+    }
+
+    public MessageReader(ResurfaceTables tables, ResurfaceTableHandle handle, List<File> list) {
+        this(tables, handle, list, DynamicFilter.EMPTY);
+    }
+
+    public MessageReader(ResurfaceTables tables, ResurfaceTableHandle handle, List<File> list, DynamicFilter dynamicFilter) {
+        this(tables, handle, list, dynamicFilter, null, 0);
+    }
+
+    // tail_file is read starting at tail_offset, which must be a checkpoint left by an earlier reader of that shard while it was open
+    public MessageReader(ResurfaceTables tables, ResurfaceTableHandle handle, List<File> list, DynamicFilter dynamicFilter,
+                         String tail_file, long tail_offset) {
+        this.dynamicFilter = dynamicFilter;
+        this.enforced = handle.getConstraint().filter((column, domain) -> isEnforced(((ResurfaceColumnHandle) column).getOrdinalPosition()));
+        this.filter = MessageFilter.of(enforced, handle.getMasks());
+        this.masks = handle.getMasks();
+        this.tables = tables;
+        if (handle.getNewest().isPresent()) {
+            list = sortNewestFirst(list);
+            this.newest = new LongHeapPriorityQueue();
+            this.newest_count = handle.getNewest().getAsLong();
+        }
+        this.limit = handle.getLimit().orElse(Long.MAX_VALUE);
+        this.mmap = tables.isMessagesMmap();
+        this.open_file = tables.getOpenFile();
+        this.tail_file = tail_file;
+        this.tail_offset = tail_offset;
+        ExecutorService executor = tables.getMessagesPrefetchExecutor();
+        if (executor != null && !mmap) {
+            this.prefetcher = new ShardPrefetcher(list.iterator(), this::isWanted, executor, tables.getMessagesPrefetchBudget(), open_file);
+            this.files = prefetcher;
+        } else {
+            this.prefetcher = null;
+            this.files = list.iterator();
+        }
+        this.stream = buildNextStream();
+    }
+
+    private long checkpoint_offset;
+    private long checkpoint_rows;
+    private boolean closed;
+    private long completed_bytes;
+    private long decode_nanos;
+    private TupleDomain<ColumnHandle> dynamic = TupleDomain.all();
+    private boolean dynamic_complete;
+    private final DynamicFilter dynamicFilter;
+    private final TupleDomain<ColumnHandle> enforced;
+    private File file;
+    private final Iterator<File> files;
+    private MessageFilter filter;
+    private ShardIndex index;
+    private long limit;
+    private final Logger log = Logger.get(MessageReader.class);
+    private final List<BitmapMask> masks;
+    private PersistentHttpMessage message;
+    private final boolean mmap;
+    private LongPriorityQueue newest;
+    private long newest_count;
+    private final String open_file;
+    private final ShardPrefetcher prefetcher;
+    private byte[] read_buffer;
+    private long rows;
+    private Slice shard_file;
+    private Consumer<File> shard_listener;
+    private long shard_returned;
+    private long shards;
+    private long skipped_rows;
+    private long skipped_shards;
+    private MeasurableInputStream stream;
+    private long stream_start;
+    private final String tail_file;
+    private final long tail_offset;
+    private final ResurfaceTables tables;
+    private boolean tracking;
+
+    public boolean next() {
+        if (limit == 0) {
+            message = null;
+            return false;
+        }
+        try {
+            while (stream != null) {
+                long start = System.nanoTime();
+                long before = tracking ? stream.position() : 0;
+                try {
+                    message.read(stream);
+                } catch (EOFException | RuntimeException | StreamCorruptedException e) {
+                    decode_nanos += System.nanoTime() - start;
+                    // nothing consumed means the shard ended cleanly, otherwise the last message is still being written
+                    if (tracking && stream.position() == before) {
+                        checkpoint_offset = before;
+                        checkpoint_rows = shard_returned;
+                    }
+                    if (index != null) tables.putIndex(file, index);
+                    if (shard_listener != null) shard_listener.accept(file);
+                    closeStream();
+                    stream = buildNextStream();
+                    continue;
+                }
+                decode_nanos += System.nanoTime() - start;
+                if (tracking && stream.position() > before) {
+                    checkpoint_offset = before;  // decoder pulled new bytes, so a fresh one can start reading here
+                    checkpoint_rows = shard_returned;
+                }
+                rows++;
+                if (index != null) index.add(this);
+                if (filter != null && !filter.test(this)) {
+                    skipped_rows++;
+                    continue;
+                }
+                if (newest != null && !offerNewest()) continue;
+                limit--;
+                shard_returned++;
+                return true;
+            }
+            message = null;
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MeasurableInputStream buildNextStream() {
+        index = null;
+        while (files.hasNext()) {
+            File f = files.next();
+            if (isOlderThanNewest(f)) return null;  // files are sorted newest first, so the rest are older too
+            refreshDynamicFilter();
+            if (filter != null && filter.isNone()) return null;
+            if (!tables.mayMatch(f, dynamic)) {
+                skipped_shards++;
+                continue;
+            }
+            boolean closed = !f.getName().equals(open_file);
+            try {
+                message = new CompressedHttpMessage();
+                shard_file = utf8Slice(f.getName());
+                MeasurableInputStream result = prefetcher == null ? null : prefetcher.getStream();
+                if (result == null && mmap && closed) result = new MappedFileInputStream(f);
+                if (result == null) {
+                    if (read_buffer == null) read_buffer = tables.borrowReadBuffer();  // kept until close, one shard is open at a time
+                    result = new FastBufferedInputStream(new FileInputStream(f), read_buffer);
+                }
+                boolean resumed = tail_offset > 0 && f.getName().equals(tail_file);
+                if (resumed) ((RepositionableStream) result).position(tail_offset);
+                file = f;
+                shards++;
+                shard_returned = 0;
+                stream_start = result.position();
+                tracking = !closed;
+                checkpoint_offset = stream_start;
+                checkpoint_rows = 0;
+                if (closed && !resumed && tables.getIndex(f) == null) index = ShardIndex.create(f);  // a resumed read misses earlier rows
+                return result;
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                // shard was removed since listing, move on to the next one
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return null;
+    }
+
+    private void refreshDynamicFilter() {
+        if (dynamic_complete) return;
+        dynamic_complete = dynamicFilter.isComplete();  // checked first, so a complete filter is never missed
+        TupleDomain<ColumnHandle> current = dynamicFilter.getCurrentPredicate();
+        if (!current.equals(dynamic)) {
+            dynamic = current;
+            filter = MessageFilter.of(enforced.intersect(current), masks);
+        }
+    }
+
+    // makes the same skips as buildNextStream, so the prefetcher never reads a shard that's pruned anyway
+    private boolean isWanted(File f) {
+        if (isOlderThanNewest(f)) return false;
+        refreshDynamicFilter();
+        return (filter == null || !filter.isNone()) && tables.mayMatch(f, dynamic);
+    }
+
+    private boolean isOlderThanNewest(File f) {
+        if (newest == null || newest.size() < newest_count) return false;
+        ShardIndex i = tables.getIndex(f);
+        return i != null && i.getMax(INTERVAL_MILLIS.getOrdinalPosition()).orElse(Long.MIN_VALUE) <= newest.firstLong();
+    }
+
+    private boolean offerNewest() {
+        if (isNull(INTERVAL_MILLIS.getOrdinalPosition())) return newest.size() < newest_count;  // nulls sort last
+        long interval_millis = getLong(INTERVAL_MILLIS.getOrdinalPosition());
+        if (newest.size() < newest_count) {
+            newest.enqueue(interval_millis);
+            return true;
+        } else if (interval_millis > newest.firstLong()) {
+            newest.dequeueLong();
+            newest.enqueue(interval_millis);
+            return true;
+        } else {
+            return interval_millis == newest.firstLong();
+        }
+    }
+
+    private List<File> sortNewestFirst(List<File> files) {
+        Map<File, Long> maxs = new HashMap<>();
+        for (File f : files) {
+            ShardIndex i = tables.getIndex(f);
+            maxs.put(f, i == null ? Long.MAX_VALUE : i.getMax(INTERVAL_MILLIS.getOrdinalPosition()).orElse(Long.MIN_VALUE));
+        }
+        List<File> result = new ArrayList<>(files);
+        result.sort(Comparator.comparing((File f) -> maxs.get(f)).thenComparingLong(File::lastModified).reversed());
+        return result;
+    }
+
+    @Override
+    public void close() {
+        index = null;
+        if (prefetcher != null) prefetcher.close();
+        if (stream != null) {
+            try {
+                closeStream();
+            } catch (IOException ignored) {
+                // nothing to do here
+            }
+        }
+        if (read_buffer != null) {
+            tables.returnReadBuffer(read_buffer);
+            read_buffer = null;
+        }
+        if (!closed) {
+            closed = true;
+            tables.getStats().recordScan(completed_bytes, decode_nanos, rows, shards);
+        }
+    }
+
+    private void closeStream() throws IOException {
+        completed_bytes += stream.position() - stream_start;
+        stream.close();
+        stream = null;
+    }
+
+    public long getCompletedBytes() {
+        try {
+            return stream == null ? completed_bytes : completed_bytes + stream.position() - stream_start;
+        } catch (IOException e) {
+            return completed_bytes;
+        }
+    }
+
+    // prefetch buffers held by this reader, which the page source reports as its memory
+    public long getPrefetchedBytes() {
+        return prefetcher == null ? 0 : prefetcher.getRetainedBytes();
+    }
+
+    public long getDecodeNanos() {
+        return decode_nanos;
+    }
+
+    // offset of the last message boundary a new reader can resume the open shard from, once it's been read to the end
+    public long getCheckpointOffset() {
+        return checkpoint_offset;
+    }
+
+    // rows returned from the open shard before its checkpoint
+    public long getCheckpointRows() {
+        return checkpoint_rows;
+    }
+
+    // shard this reader took as open, and so tracked checkpoints for
+    public String getOpenFile() {
+        return open_file;
+    }
+
+    public boolean isDynamicallyFiltered() {
+        return !dynamic.isAll();
+    }
+
+    // called with each shard once it's been read to the end
+    public void setShardListener(Consumer<File> shard_listener) {
+        this.shard_listener = shard_listener;
+    }
+
+    public long getSkippedRows() {
+        return skipped_rows;
+    }
+
+    public long getSkippedShards() {
+        return skipped_shards;
+    }
+
+    public long getLong(int ordinal) {
+        switch (ordinal) {
+            case 5: // v3
+                return message.graphql_operations_count.value();
+            case 7:
+                return message.interval_millis.value();
+            case 21:
+                return message.response_time_millis.value();
+            case 22:
+                return message.size_request_bytes.value();
+            case 23:
+                return message.size_response_bytes.value();
+            case 28: // v3
+                return message.cookies_count.value();
+            case 30: // v3.1
+                return message.size_request_bytes.value() + message.size_response_bytes.value();
+            case 31: // v3.1
+                return message.bitmap_versioning.value();
+            case 32: // v3.1
+                return message.bitmap_request_info.value();
+            case 33: // v3.1
+                return message.bitmap_request_json.value();
+            case 34: // v3.1
+                return message.bitmap_request_graphql.value();
+            case 35: // v3.1
+                return message.bitmap_request_pii.value();
+            case 36: // v3.1
+                return message.bitmap_request_threat.value();
+            case 37: // v3.1
+                return message.bitmap_response_info.value();
+            case 38: // v3.1
+                return message.bitmap_response_json.value();
+            case 39: // v3.1
+                return message.bitmap_response_pii.value();
+            case 40: // v3.1
+                return message.bitmap_response_threat.value();
+            case 41: // v3.1
+                return message.bitmap_attack_request.value();
+            case 42: // v3.1
+                return message.bitmap_attack_application.value();
+            case 43: // v3.1
+                return message.bitmap_attack_injection.value();
+            case 44: // v3.1
+                return message.bitmap_response_leak.value();
+            case 45: // v3.1
+                return message.bitmap_unused2.value();
+            case 46: // v3.1
+                return message.bitmap_unused3.value();
+            case 47: // v3.1
+                return message.bitmap_unused4.value();
+            case 48: // v3.1
+                return message.bitmap_unused5.value();
+            case 50: // v3.6
+                return message.host.length();
+            case 51: // v3.6
+                return message.request_body.length();
+            case 52: // v3.6
+                return message.request_headers.length();
+            case 53: // v3.6
+                return message.request_params.length();
+            case 54: // v3.6
+                return message.request_url.length();
+            case 55: // v3.6
+                return message.response_body.length();
+            case 56: // v3.6
+                return message.response_headers.length();
+            default:
+                throw new IllegalArgumentException("Cannot get as long: " + getColumnName(ordinal));
+        }
+    }
+
+    public PersistentHttpMessage getMessage() {
+        return message;
+    }
+
+    public Slice getShardFile() {
+        return shard_file;
+    }
+
+    public Slice getSlice(int ordinal) {
+        switch (ordinal) {
+            case 0:
+                return getSliceFromField(message.id);
+            case 1:
+                return getSliceFromField(message.agent_category);
+            case 2:
+                return getSliceFromField(message.agent_device);
+            case 3:
+                return getSliceFromField(message.agent_name);
+            case 4: // v3
+                return getSliceFromField(message.graphql_operations);
+            case 6:
+                return getSliceFromField(message.host);
+            case 8:
+                return getSliceFromField(message.request_body);
+            case 9:
+                return getSliceFromField(message.request_content_type);
+            case 10:
+                return getSliceFromField(message.request_headers);
+            case 11:
+                return getSliceFromField(message.request_json_type);
+            case 12:
+                return getSliceFromField(message.request_method);
+            case 13:
+                return getSliceFromField(message.request_params);
+            case 14:
+                return getSliceFromField(message.request_url);
+            case 15:
+                return getSliceFromField(message.request_user_agent);
+            case 16:
+                return getSliceFromField(message.response_body);
+            case 17:
+                return getSliceFromField(message.response_code);
+            case 18:
+                return getSliceFromField(message.response_content_type);
+            case 19:
+                return getSliceFromField(message.response_headers);
+            case 20:
+                return getSliceFromField(message.response_json_type);
+            case 24: // v3
+                return getSliceFromField(message.custom_fields);
+            case 25: // v3
+                return getSliceFromField(message.request_address);
+            case 26: // v3
+                return getSliceFromField(message.session_fields);
+            case 27: // v3
+                return getSliceFromField(message.cookies);
+            case 29: // v3.1 (response_status)
+                return Slices.EMPTY_SLICE;
+            case 49: // v3.5
+                return shard_file;
+            default:
+                throw new IllegalArgumentException("Cannot get as string: " + getColumnName(ordinal));
+        }
+    }
+
+    private Slice getSliceFromField(PersistentHttpMessageString field) {
+        try {
+            return field.isNull() ? Slices.EMPTY_SLICE : field.toSlice();
+        } catch (Exception e) {
+            log.error("getSliceFromField failed:"
+                    + "\nfield.length=" + field.length()
+                    + "\nfield.offset=" + field.offset()
+                    + "\nmessage.id=" + message.id.value()
+                    + "\nmessage.id.length=" + message.id.length()
+                    + "\nmessage.agent_category.length=" + message.agent_category.length()
+                    + "\nmessage.agent_device.length=" + message.agent_device.length()
+                    + "\nmessage.agent_name.length=" + message.agent_name.length()
+                    + "\nmessage.graphql_operations.length=" + message.graphql_operations.length()
+                    + "\nmessage.host.length=" + message.host.length()
+                    + "\nmessage.request_body.length=" + message.request_body.length()
+                    + "\nmessage.request_content_type.length=" + message.request_content_type.length()
+                    + "\nmessage.request_headers.length=" + message.request_headers.length()
+                    + "\nmessage.request_json_type.length=" + message.request_json_type.length()
+                    + "\nmessage.request_method.length=" + message.request_method.length()
+                    + "\nmessage.request_params.length=" + message.request_params.length()
+                    + "\nmessage.request_url.length=" + message.request_url.length()
+                    + "\nmessage.request_user_agent.length=" + message.request_user_agent.length()
+                    + "\nmessage.response_body.length=" + message.response_body.length()
+                    + "\nmessage.response_code.length=" + message.response_code.length()
+                    + "\nmessage.response_content_type.length=" + message.response_content_type.length()
+                    + "\nmessage.response_headers.length=" + message.response_headers.length()
+                    + "\nmessage.response_json_type.length=" + message.response_json_type.length()
+                    + "\nmessage.custom_fields.length=" + message.custom_fields.length()
+                    + "\nmessage.request_address.length=" + message.request_address.length()
+                    + "\nmessage.session_fields.length=" + message.session_fields.length()
+                    + "\nmessage.cookies.length=" + message.cookies.length()
+                    + "\nmessage.id.offset=" + message.id.offset()
+                    + "\nmessage.agent_category.offset=" + message.agent_category.offset()
+                    + "\nmessage.agent_device.offset=" + message.agent_device.offset()
+                    + "\nmessage.agent_name.offset=" + message.agent_name.offset()
+                    + "\nmessage.graphql_operations.offset=" + message.graphql_operations.offset()
+                    + "\nmessage.host.offset=" + message.host.offset()
+                    + "\nmessage.request_body.offset=" + message.request_body.offset()
+                    + "\nmessage.request_content_type.offset=" + message.request_content_type.offset()
+                    + "\nmessage.request_headers.offset=" + message.request_headers.offset()
+                    + "\nmessage.request_json_type.offset=" + message.request_json_type.offset()
+                    + "\nmessage.request_method.offset=" + message.request_method.offset()
+                    + "\nmessage.request_params.offset=" + message.request_params.offset()
+                    + "\nmessage.request_url.offset=" + message.request_url.offset()
+                    + "\nmessage.request_user_agent.offset=" + message.request_user_agent.offset()
+                    + "\nmessage.response_body.offset=" + message.response_body.offset()
+                    + "\nmessage.response_code.offset=" + message.response_code.offset()
+                    + "\nmessage.response_content_type.offset=" + message.response_content_type.offset()
+                    + "\nmessage.response_headers.offset=" + message.response_headers.offset()
+                    + "\nmessage.response_json_type.offset=" + message.response_json_type.offset()
+                    + "\nmessage.custom_fields.offset=" + message.custom_fields.offset()
+                    + "\nmessage.request_address.offset=" + message.request_address.offset()
+                    + "\nmessage.session_fields.offset=" + message.session_fields.offset()
+                    + "\nmessage.cookies.offset=" + message.cookies.offset());
+            return Slices.EMPTY_SLICE;
+        }
+    }
+
+    private static String getColumnName(int ordinal) {
+        return (ordinal >= 0 && ordinal < COLUMNS.size()) ? COLUMNS.get(ordinal).getName() : String.valueOf(ordinal);
+    }
+
+    public static boolean isAlwaysNull(int ordinal) {
+        return ordinal == 29;  // response_status
+    }
+
+    public static boolean isBitmap(int ordinal) {
+        return ordinal >= 31 && ordinal <= 48;
+    }
+
+    // columns that are cheap to read, so pushed-down domains on them are checked per row
+    public static boolean isEnforced(int ordinal) {
+        return switch (ordinal) {
+            case 5, 7, 21, 22, 23, 28 -> true;  // counts, intervals & sizes
+            case 12, 17 -> true;                // request_method & response_code
+            case 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46, 47, 48 -> true;  // v3.1 sizes & bitmaps
+            case 49 -> true;                    // v3.5 shard_file
+            case 50, 51, 52, 53, 54, 55, 56 -> true;  // v3.6 sizes
+            default -> false;
+        };
+    }
+
+    public static boolean isNeverNull(int ordinal) {
+        return switch (ordinal) {
+            case 5, 28 -> true;                 // v3 counts
+            case 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46, 47, 48 -> true;  // v3.1 sizes & bitmaps
+            case 49 -> true;                    // v3.5 shard_file
+            case 50, 51, 52, 53, 54, 55, 56 -> true;  // v3.6 sizes
+            default -> false;
+        };
+    }
+
+    public boolean isNull(int ordinal) {
+        switch (ordinal) {
+            case 0:
+                return message.id.isNull();
+            case 1:
+                return message.agent_category.isNull();
+            case 2:
+                return message.agent_device.isNull();
+            case 3:
+                return message.agent_name.isNull();
+            case 4: // v3
+                return message.graphql_operations.isNull();
+            case 5: // v3
+                return false;  // graphql_operations_count
+            case 6:
+                return message.host.isNull();
+            case 7:
+                return message.interval_millis.value() == 0;
+            case 8:
+                return message.request_body.isNull();
+            case 9:
+                return message.request_content_type.isNull();
+            case 10:
+                return message.request_headers.isNull();
+            case 11:
+                return message.request_json_type.isNull();
+            case 12:
+                return message.request_method.isNull();
+            case 13:
+                return message.request_params.isNull();
+            case 14:
+                return message.request_url.isNull();
+            case 15:
+                return message.request_user_agent.isNull();
+            case 16:
+                return message.response_body.isNull();
+            case 17:
+                return message.response_code.isNull();
+            case 18:
+                return message.response_content_type.isNull();
+            case 19:
+                return message.response_headers.isNull();
+            case 20:
+                return message.response_json_type.isNull();
+            case 21:
+                return message.response_time_millis.value() == 0;
+            case 22:
+                return message.size_request_bytes.value() == 0;
+            case 23:
+                return message.size_response_bytes.value() == 0;
+            case 24: // v3
+                return message.custom_fields.isNull();
+            case 25: // v3
+                return message.request_address.isNull();
+            case 26: // v3
+                return message.session_fields.isNull();
+            case 27: // v3
+                return message.cookies.isNull();
+            case 28: // v3
+                return false;  // cookies_count
+            case 29: // v3.1
+                return true;   // response_status
+            case 30: // v3.1
+                return false;  // size_total_bytes
+            case 31: // v3.1
+                return false;  // bitmap_versioning
+            case 32: // v3.1
+                return false;  // bitmap_request_info
+            case 33: // v3.1
+                return false;  // bitmap_request_json
+            case 34: // v3.1
+                return false;  // bitmap_request_graphql
+            case 35: // v3.1
+                return false;  // bitmap_request_pii
+            case 36: // v3.1
+                return false;  // bitmap_request_threat
+            case 37: // v3.1
+                return false;  // bitmap_response_info
+            case 38: // v3.1
+                return false;  // bitmap_response_json
+            case 39: // v3.1
+                return false;  // bitmap_response_pii
+            case 40: // v3.1
+                return false;  // bitmap_response_threat
+            case 41: // v3.1
+                return false;  // bitmap_attack_request
+            case 42: // v3.1
+                return false;  // bitmap_attack_application
+            case 43: // v3.1
+                return false;  // bitmap_attack_injection
+            case 44: // v3.1
+                return false;  // bitmap_response_leak
+            case 45: // v3.1
+                return false;  // bitmap_unused2
+            case 46: // v3.1
+                return false;  // bitmap_unused3
+            case 47: // v3.1
+                return false;  // bitmap_unused4
+            case 48: // v3.1
+                return false;  // bitmap_unused5
+            case 49: // v3.5
+                return false;  // shard_file
+            case 50: // v3.6
+                return false;  // size_host_bytes
+            case 51: // v3.6
+                return false;  // size_request_body_bytes
+            case 52: // v3.6
+                return false;  // size_request_headers_bytes
+            case 53: // v3.6
+                return false;  // size_request_params_bytes
+            case 54: // v3.6
+                return false;  // size_request_url_bytes
+            case 55: // v3.6
+                return false;  // size_response_body_bytes
+            case 56: // v3.6
+                return false;  // size_response_headers_bytes
+            default:
+                throw new IllegalArgumentException("Invalid field index: " + ordinal);
+        }
+    }
+
+}
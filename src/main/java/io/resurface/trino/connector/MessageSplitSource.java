@@ -0,0 +1,55 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.connector.ConnectorSplit;
+import io.trino.spi.connector.ConnectorSplitSource;
+import io.trino.spi.connector.DynamicFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class MessageSplitSource implements ConnectorSplitSource {
+
+    private static final ConnectorSplitBatch EMPTY_BATCH = new ConnectorSplitBatch(List.of(), false);
+
+    public MessageSplitSource(List<ConnectorSplit> splits, DynamicFilter dynamicFilter, long waitMillis) {
+        this.deadline = System.nanoTime() + waitMillis * 1_000_000;
+        this.dynamicFilter = dynamicFilter;
+        this.splits = new ArrayList<>(splits);
+    }
+
+    private final long deadline;
+    private final DynamicFilter dynamicFilter;
+    private int offset;
+    private final List<ConnectorSplit> splits;
+
+    @Override
+    public CompletableFuture<ConnectorSplitBatch> getNextBatch(int maxSize) {
+        // hold splits back briefly, so page sources start with a dynamic filter that can prune shards
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0 && dynamicFilter.isAwaitable()) {
+            CompletableFuture<?> blocked = dynamicFilter.isBlocked();
+            if (!blocked.isDone()) return blocked.thenApply(ignored -> EMPTY_BATCH).completeOnTimeout(EMPTY_BATCH, remaining, NANOSECONDS);
+        }
+
+        int end = Math.min(splits.size(), offset + maxSize);
+        List<ConnectorSplit> batch = List.copyOf(splits.subList(offset, end));
+        offset = end;
+        return CompletableFuture.completedFuture(new ConnectorSplitBatch(batch, isFinished()));
+    }
+
+    @Override
+    public void close() {
+        // do nothing
+    }
+
+    @Override
+    public boolean isFinished() {
+        return offset >= splits.size();
+    }
+
+}
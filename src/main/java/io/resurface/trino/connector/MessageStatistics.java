@@ -0,0 +1,98 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.hash.BloomFilter;
+import io.airlift.slice.Slice;
+import io.trino.spi.connector.ColumnMetadata;
+import io.trino.spi.statistics.ColumnStatistics;
+import io.trino.spi.statistics.DoubleRange;
+import io.trino.spi.statistics.Estimate;
+import io.trino.spi.statistics.TableStatistics;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import static io.resurface.trino.connector.ShardIndex.BLOOM_ORDINALS;
+import static io.resurface.trino.connector.ShardIndex.RANGE_ORDINALS;
+
+public class MessageStatistics {
+
+    @SuppressWarnings("unchecked")
+    public MessageStatistics() {
+        this.blooms = new BloomFilter[BLOOM_ORDINALS.length];
+        this.maxs = new long[RANGE_ORDINALS.length];
+        this.mins = new long[RANGE_ORDINALS.length];
+        this.nonNulls = new long[RANGE_ORDINALS.length];
+        this.stringBytes = new long[BLOOM_ORDINALS.length];
+        this.stringNulls = new long[BLOOM_ORDINALS.length];
+    }
+
+    private final BloomFilter<Slice>[] blooms;
+    private long bytes;
+    private final long[] maxs;
+    private final long[] mins;
+    private final long[] nonNulls;
+    private long rowCount;
+    private final Set<String> shards = new HashSet<>();
+    private final long[] stringBytes;
+    private final long[] stringNulls;
+
+    public void add(File shard, ShardIndex index) {
+        if (!shards.add(shard.getName())) return;
+        bytes += index.getLength();
+        rowCount += index.getRowCount();
+        for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+            int ordinal = RANGE_ORDINALS[i];
+            if (index.getNonNullCount(ordinal) == 0) continue;
+            long min = index.getMin(ordinal).getAsLong();
+            long max = index.getMax(ordinal).getAsLong();
+            mins[i] = nonNulls[i] == 0 ? min : Math.min(mins[i], min);
+            maxs[i] = nonNulls[i] == 0 ? max : Math.max(maxs[i], max);
+            nonNulls[i] += index.getNonNullCount(ordinal);
+        }
+        for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+            int ordinal = BLOOM_ORDINALS[i];
+            stringBytes[i] += index.getStringBytes(ordinal);
+            stringNulls[i] += index.getStringNullCount(ordinal);
+            if (blooms[i] == null) {
+                blooms[i] = index.getBloomFilter(ordinal).copy();
+            } else {
+                blooms[i].putAll(index.getBloomFilter(ordinal));
+            }
+        }
+    }
+
+    public Set<String> getShards() {
+        return shards;
+    }
+
+    public TableStatistics build(long unindexedBytes, int nodes) {
+        if (rowCount == 0 || bytes == 0) return TableStatistics.empty();
+
+        // shards without an index yet are assumed to hold rows at the same density, and every node is assumed alike
+        double scale = (1.0 + (double) unindexedBytes / bytes) * Math.max(1, nodes);
+        TableStatistics.Builder builder = TableStatistics.builder().setRowCount(Estimate.of(rowCount * scale));
+        for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+            ColumnStatistics.Builder column = ColumnStatistics.builder()
+                    .setNullsFraction(Estimate.of(1.0 - (double) nonNulls[i] / rowCount));
+            if (nonNulls[i] > 0) column.setRange(new DoubleRange(mins[i], maxs[i]));
+            builder.setColumnStatistics(getColumnHandle(RANGE_ORDINALS[i]), column.build());
+        }
+        for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+            ColumnStatistics.Builder column = ColumnStatistics.builder()
+                    .setNullsFraction(Estimate.of((double) stringNulls[i] / rowCount))
+                    .setDataSize(Estimate.of(stringBytes[i] * scale));
+            if (stringNulls[i] < rowCount) column.setDistinctValuesCount(Estimate.of(Math.max(1, blooms[i].approximateElementCount())));
+            builder.setColumnStatistics(getColumnHandle(BLOOM_ORDINALS[i]), column.build());
+        }
+        return builder.build();
+    }
+
+    private static ResurfaceColumnHandle getColumnHandle(int ordinal) {
+        ColumnMetadata column = ResurfaceTables.MessageTable.COLUMNS.get(ordinal);
+        return new ResurfaceColumnHandle(column.getName(), column.getType(), ordinal);
+    }
+
+}
@@ -0,0 +1,185 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.Page;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.connector.ConnectorPageSource;
+import io.trino.spi.connector.DynamicFilter;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.type.Type;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+
+import static io.trino.spi.type.TypeUtils.readNativeValue;
+
+// reads the open shard without the constraint, resuming from the checkpoint cached by an earlier scan, so the cached pages
+// serve any later scan with the same columns & masks, and the enforced domains are applied to pages on the way out
+public class OpenShardPageSource implements ConnectorPageSource {
+
+    public OpenShardPageSource(ResurfaceTables tables, ShardPageCache cache, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle,
+                               File shard) {
+        // columns the domains are on come after the output columns, in ordinal order so scans share the same cache key
+        Map<ColumnHandle, Domain> domains = handle.getConstraint()
+                .filter((column, domain) -> MessageReader.isEnforced(((ResurfaceColumnHandle) column).getOrdinalPosition()))
+                .getDomains().orElseThrow();
+        List<ResurfaceColumnHandle> scanned = new ArrayList<>(columns);
+        domains.keySet().stream().map(column -> (ResurfaceColumnHandle) column).filter(column -> !columns.contains(column))
+                .sorted(Comparator.comparingInt(ResurfaceColumnHandle::getOrdinalPosition)).forEach(scanned::add);
+        this.channels = new int[domains.size()];
+        this.domains = new Domain[domains.size()];
+        this.types = new Type[domains.size()];
+        int i = 0;
+        for (Map.Entry<ColumnHandle, Domain> e : domains.entrySet()) {
+            ResurfaceColumnHandle column = (ResurfaceColumnHandle) e.getKey();
+            this.channels[i] = scanned.indexOf(column);
+            this.domains[i] = e.getValue();
+            this.types[i] = column.getColumnType();
+            i++;
+        }
+        this.outputs = scanned.size() == columns.size() ? null : IntStream.range(0, columns.size()).toArray();
+
+        this.cache = cache;
+        this.columns = scanned.stream().map(ResurfaceColumnHandle::getOrdinalPosition).toList();
+        this.masks = handle.getMasks();
+        this.shard = shard;
+        ShardPageCache.Entry entry = cache.getTail(shard, this.columns, masks);
+        long offset = 0;
+        if (entry != null) {
+            for (Page page : entry.pages()) {
+                staged.add(page);
+                staged_bytes += page.getRetainedSizeInBytes();
+            }
+            offset = entry.offset();
+            this.resumed = entry.pages();
+        }
+        ResurfaceTableHandle unconstrained = new ResurfaceTableHandle(handle.getSchemaTableName(), TupleDomain.all(), masks,
+                OptionalLong.empty(), OptionalLong.empty(), false);
+        this.reader = new MessageReader(tables, unconstrained, List.of(shard), DynamicFilter.EMPTY, shard.getName(), offset);
+        reader.setShardListener(f -> read = true);
+        this.source = new MessagePageSource(tables, scanned, unconstrained, reader);
+    }
+
+    private final ShardPageCache cache;
+    private final int[] channels;
+    private List<Page> collected = new ArrayList<>();
+    private long collected_bytes;
+    private final List<Integer> columns;
+    private final Domain[] domains;
+    private boolean finished;
+    private final List<BitmapMask> masks;
+    private final int[] outputs;
+    private boolean read;
+    private final MessageReader reader;
+    private List<Page> resumed = List.of();
+    private final File shard;
+    private final MessagePageSource source;
+    private final ArrayDeque<Page> staged = new ArrayDeque<>();
+    private long staged_bytes;
+    private final Type[] types;
+
+    @Override
+    public void close() {
+        source.close();
+    }
+
+    @Override
+    public long getCompletedBytes() {
+        return source.getCompletedBytes();
+    }
+
+    // includes cached pages waiting to be filtered, and pages collected for caching the shard
+    @Override
+    public long getMemoryUsage() {
+        return source.getMemoryUsage() + staged_bytes + (collected == null ? 0 : collected_bytes);
+    }
+
+    @Override
+    public Page getNextPage() {
+        while (!finished) {
+            Page page = staged.poll();
+            if (page != null) {
+                staged_bytes -= page.getRetainedSizeInBytes();
+            } else {
+                page = source.getNextPage();
+                if (page == null) {
+                    endShard();
+                    return null;
+                }
+                collect(page);
+            }
+            page = filter(page);
+            if (page != null) return page;
+        }
+        return null;
+    }
+
+    private void collect(Page page) {
+        if (collected == null) return;
+        collected_bytes += page.getRetainedSizeInBytes();
+        if (cache.fits(collected_bytes)) {
+            collected.add(page);
+        } else {
+            collected = null;  // too big to ever stay cached, so stop holding on to its pages
+        }
+    }
+
+    // rows past the checkpoint are decoded again next time, along with whatever gets appended
+    private void endShard() {
+        finished = true;
+        if (read && collected != null) {
+            List<Page> pages = new ArrayList<>(resumed);
+            pages.addAll(head(collected, reader.getCheckpointRows()));
+            cache.putTail(shard, columns, masks, reader.getCheckpointOffset(), pages);
+        }
+        collected = null;
+    }
+
+    private Page filter(Page page) {
+        int[] positions = new int[page.getPositionCount()];
+        int count = 0;
+        for (int position = 0; position < positions.length; position++) {
+            if (matches(page, position)) positions[count++] = position;
+        }
+        if (count == 0) return null;
+        if (count < positions.length) page = page.getPositions(positions, 0, count);
+        return outputs == null ? page : page.getColumns(outputs);
+    }
+
+    private boolean matches(Page page, int position) {
+        for (int i = 0; i < channels.length; i++) {
+            if (!domains[i].includesNullableValue(readNativeValue(types[i], page.getBlock(channels[i]), position))) return false;
+        }
+        return true;
+    }
+
+    private static List<Page> head(List<Page> pages, long rows) {
+        List<Page> result = new ArrayList<>();
+        for (Page page : pages) {
+            if (rows == 0) break;
+            int count = (int) Math.min(rows, page.getPositionCount());
+            result.add(count == page.getPositionCount() ? page : MessagePageSource.copyRegion(page, 0, count));
+            rows -= count;
+        }
+        return result;
+    }
+
+    @Override
+    public long getReadTimeNanos() {
+        return source.getReadTimeNanos();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+}
@@ -3,37 +3,131 @@
 package io.resurface.trino.connector;
 
 import io.airlift.configuration.Config;
+import jakarta.validation.constraints.AssertTrue;
 
 public class ResurfaceConfig {
 
+    private long messagesCacheBytes = 0;
     private String messagesDir = null;
+    private long messagesDynamicFilterWaitMillis = 1000;
+    private boolean messagesIncrementalTail = false;
+    private boolean messagesMmap = false;
+    private boolean messagesPageSource = true;
+    private long messagesPrefetchBytes = 64L * 1024 * 1024;
+    private int messagesPrefetchThreads = 0;
     private int messagesSlabs;
+    private long messagesSplitBytes = 256L * 1024 * 1024;
     private String viewsDir = null;
 
+    public long getMessagesCacheBytes() {
+        return messagesCacheBytes;
+    }
+
     public String getMessagesDir() {
         return messagesDir;
     }
 
+    public long getMessagesDynamicFilterWaitMillis() {
+        return messagesDynamicFilterWaitMillis;
+    }
+
+    public long getMessagesPrefetchBytes() {
+        return messagesPrefetchBytes;
+    }
+
+    public int getMessagesPrefetchThreads() {
+        return messagesPrefetchThreads;
+    }
+
     public int getMessagesSlabs() {
         return messagesSlabs;
     }
 
+    public long getMessagesSplitBytes() {
+        return messagesSplitBytes;
+    }
+
+    public boolean isMessagesIncrementalTail() {
+        return messagesIncrementalTail;
+    }
+
+    public boolean isMessagesMmap() {
+        return messagesMmap;
+    }
+
+    public boolean isMessagesPageSource() {
+        return messagesPageSource;
+    }
+
     public String getViewsDir() {
         return viewsDir;
     }
 
+    @AssertTrue(message = "resurface.messages.incremental-tail requires resurface.messages.cache-bytes to be positive")
+    public boolean isMessagesIncrementalTailValid() {
+        return !messagesIncrementalTail || messagesCacheBytes > 0;  // the tail checkpoint is kept in the page cache
+    }
+
+    @Config("resurface.messages.cache-bytes")
+    public ResurfaceConfig setMessagesCacheBytes(long messagesCacheBytes) {
+        this.messagesCacheBytes = messagesCacheBytes;
+        return this;
+    }
+
     @Config("resurface.messages.dir")
     public ResurfaceConfig setMessagesDir(String dir) {
         this.messagesDir = dir;
         return this;
     }
 
+    @Config("resurface.messages.dynamic-filter-wait-millis")
+    public ResurfaceConfig setMessagesDynamicFilterWaitMillis(long messagesDynamicFilterWaitMillis) {
+        this.messagesDynamicFilterWaitMillis = messagesDynamicFilterWaitMillis;
+        return this;
+    }
+
+    @Config("resurface.messages.incremental-tail")
+    public ResurfaceConfig setMessagesIncrementalTail(boolean messagesIncrementalTail) {
+        this.messagesIncrementalTail = messagesIncrementalTail;
+        return this;
+    }
+
+    @Config("resurface.messages.mmap")
+    public ResurfaceConfig setMessagesMmap(boolean messagesMmap) {
+        this.messagesMmap = messagesMmap;
+        return this;
+    }
+
+    @Config("resurface.messages.page-source")
+    public ResurfaceConfig setMessagesPageSource(boolean messagesPageSource) {
+        this.messagesPageSource = messagesPageSource;
+        return this;
+    }
+
+    @Config("resurface.messages.prefetch-bytes")
+    public ResurfaceConfig setMessagesPrefetchBytes(long messagesPrefetchBytes) {
+        this.messagesPrefetchBytes = messagesPrefetchBytes;
+        return this;
+    }
+
+    @Config("resurface.messages.prefetch-threads")
+    public ResurfaceConfig setMessagesPrefetchThreads(int messagesPrefetchThreads) {
+        this.messagesPrefetchThreads = messagesPrefetchThreads;
+        return this;
+    }
+
     @Config("resurface.messages.slabs")
     public ResurfaceConfig setMessagesSlabs(int messagesSlabs) {
         this.messagesSlabs = messagesSlabs;
         return this;
     }
 
+    @Config("resurface.messages.split-bytes")
+    public ResurfaceConfig setMessagesSplitBytes(long messagesSplitBytes) {
+        this.messagesSplitBytes = messagesSplitBytes;
+        return this;
+    }
+
     @Config("resurface.views.dir")
     public ResurfaceConfig setViewsDir(String dir) {
         this.viewsDir = dir;
@@ -4,9 +4,11 @@ package io.resurface.trino.connector;
 
 import io.airlift.bootstrap.LifeCycleManager;
 import io.trino.spi.connector.*;
+import io.trino.spi.function.table.ConnectorTableFunction;
 import io.trino.spi.transaction.IsolationLevel;
 
 import javax.inject.Inject;
+import java.util.Set;
 
 import static io.trino.spi.transaction.IsolationLevel.READ_COMMITTED;
 import static io.trino.spi.transaction.IsolationLevel.checkConnectorSupports;
@@ -15,18 +17,20 @@ import static java.util.Objects.requireNonNull;
 public class ResurfaceConnector implements Connector {
 
     @Inject
-    public ResurfaceConnector(LifeCycleManager lifeCycleManager, ResurfaceMetadata metadata,
-                              ResurfaceSplitManager splitManager, ResurfaceRecordSetProvider recordSetProvider) {
+    public ResurfaceConnector(LifeCycleManager lifeCycleManager, ResurfaceMetadata metadata, ResurfaceSplitManager splitManager,
+                              ResurfacePageSourceProvider pageSourceProvider, ResurfaceTables tables) {
         this.lifeCycleManager = requireNonNull(lifeCycleManager, "lifeCycleManager is null");
         this.metadata = requireNonNull(metadata, "metadata is null");
-        this.recordSetProvider = requireNonNull(recordSetProvider, "recordSetProvider is null");
+        this.pageSourceProvider = requireNonNull(pageSourceProvider, "pageSourceProvider is null");
         this.splitManager = requireNonNull(splitManager, "splitManager is null");
+        this.tables = requireNonNull(tables, "tables is null");
     }
 
     private final LifeCycleManager lifeCycleManager;
     private final ResurfaceMetadata metadata;
-    private final ResurfaceRecordSetProvider recordSetProvider;
+    private final ResurfacePageSourceProvider pageSourceProvider;
     private final ResurfaceSplitManager splitManager;
+    private final ResurfaceTables tables;
 
     @Override
     public ConnectorTransactionHandle beginTransaction(IsolationLevel isolationLevel, boolean readOnly, boolean autoCommit) {
@@ -40,8 +44,8 @@ public class ResurfaceConnector implements Connector {
     }
 
     @Override
-    public ConnectorRecordSetProvider getRecordSetProvider() {
-        return recordSetProvider;
+    public ConnectorPageSourceProvider getPageSourceProvider() {
+        return pageSourceProvider;
     }
 
     @Override
@@ -49,8 +53,15 @@ public class ResurfaceConnector implements Connector {
         return splitManager;
     }
 
+    @Override
+    public Set<ConnectorTableFunction> getTableFunctions() {
+        return Set.of(new TailTableFunction());
+    }
+
     @Override
     public final void shutdown() {
+        tables.getStats().unexport();
+        tables.shutdown();
         lifeCycleManager.stop();
     }
 
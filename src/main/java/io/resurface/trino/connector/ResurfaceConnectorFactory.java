@@ -30,6 +30,7 @@ public class ResurfaceConnectorFactory implements ConnectorFactory {
                 .setRequiredConfigurationProperties(config)
                 .initialize();
 
+        injector.getInstance(ResurfaceTables.class).getStats().export(catalogName);
         return injector.getInstance(ResurfaceConnector.class);
     }
 
@@ -3,6 +3,7 @@
 package io.resurface.trino.connector;
 
 import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import io.trino.spi.function.*;
 import io.trino.spi.type.StandardTypes;
 import jakarta.annotation.Nullable;
@@ -12,6 +13,7 @@ import java.net.URL;
 
 import static com.google.common.base.Strings.nullToEmpty;
 import static io.airlift.slice.Slices.utf8Slice;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
 
 public final class ResurfaceFunctions {
 
@@ -31,14 +33,30 @@ public final class ResurfaceFunctions {
     @SqlType("varchar(x)")
     public static Slice flattenDomainName(@SqlType("varchar(x)") Slice domain) {
         if (domain == null) return null;
-        String s = domain.toStringUtf8();
-        int x = s.lastIndexOf('.');
-        if (x < 0) return domain;
-        x = s.lastIndexOf('.', x - 1);
-        if (x < 0) return domain;
-        x = s.lastIndexOf('.', x - 1);
-        if (x < 0) return domain;
-        return slice(s.substring(x + 1));
+        return flatten(domain, 3);
+    }
+
+    @SqlNullable
+    @Description("Flatten domain name to the given number of levels")
+    @ScalarFunction("flatten_domain_name")
+    @LiteralParameters("x")
+    @SqlType("varchar(x)")
+    public static Slice flattenDomainName(@SqlType("varchar(x)") Slice domain, @SqlType(StandardTypes.BIGINT) long levels) {
+        if (domain == null) return null;
+        if (levels < 1) throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Levels must be positive: " + levels);
+        return flatten(domain, levels);
+    }
+
+    private static Slice flatten(Slice domain, long levels) {
+        // dots are ascii so they never appear inside a multibyte character
+        int x = domain.length();
+        for (long level = 0; level < levels; level++) {
+            do {
+                x--;
+            } while (x >= 0 && domain.getByte(x) != '.');
+            if (x < 0) return domain;
+        }
+        return domain.slice(x + 1, domain.length() - x - 1);
     }
 
     @SqlNullable
@@ -47,6 +65,8 @@ public final class ResurfaceFunctions {
     @LiteralParameters("x")
     @SqlType("varchar(x)")
     public static Slice urlParseHost(@SqlType("varchar(x)") Slice url) {
+        UrlSplitter s = UrlSplitter.split(url);
+        if (s != null) return s.getHost();
         URL u = parseUrl(url);
         return (u == null) ? null : slice(u.getHost());
     }
@@ -57,6 +77,8 @@ public final class ResurfaceFunctions {
     @LiteralParameters("x")
     @SqlType("varchar(x)")
     public static Slice urlParsePath(@SqlType("varchar(x)") Slice url) {
+        UrlSplitter s = UrlSplitter.split(url);
+        if (s != null) return s.getPath();
         URL u = parseUrl(url);
         return (u == null) ? null : slice(u.getPath());
     }
@@ -67,6 +89,8 @@ public final class ResurfaceFunctions {
     @LiteralParameters("x")
     @SqlType(StandardTypes.BIGINT)
     public static Long urlParsePort(@SqlType("varchar(x)") Slice url) {
+        UrlSplitter s = UrlSplitter.split(url);
+        if (s != null) return s.getPort();
         URL u = parseUrl(url);
         if (u == null) return null;
         int port = u.getPort();
@@ -79,6 +103,8 @@ public final class ResurfaceFunctions {
     @LiteralParameters("x")
     @SqlType("varchar(x)")
     public static Slice urlParseProtocol(@SqlType("varchar(x)") Slice url) {
+        UrlSplitter s = UrlSplitter.split(url);
+        if (s != null) return s.getProtocol();
         URL u = parseUrl(url);
         return (u == null) ? null : slice(u.getProtocol());
     }
@@ -89,6 +115,8 @@ public final class ResurfaceFunctions {
     @LiteralParameters("x")
     @SqlType("varchar(x)")
     public static Slice urlParseQuery(@SqlType("varchar(x)") Slice url) {
+        UrlSplitter s = UrlSplitter.split(url);
+        if (s != null) return s.getQuery();
         URL u = parseUrl(url);
         return (u == null) ? null : slice(u.getQuery());
     }
@@ -8,9 +8,21 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import io.airlift.log.Logger;
+import io.trino.spi.NodeManager;
 import io.trino.spi.TrinoException;
 import io.trino.spi.connector.*;
+import io.trino.spi.expression.Call;
+import io.trino.spi.expression.ConnectorExpression;
+import io.trino.spi.expression.Constant;
+import io.trino.spi.expression.FunctionName;
+import io.trino.spi.expression.Variable;
+import io.trino.spi.function.table.ConnectorTableFunctionHandle;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.Range;
 import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.predicate.ValueSet;
+import io.trino.spi.statistics.TableStatistics;
 
 import javax.inject.Inject;
 import java.io.File;
@@ -18,15 +30,29 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.resurface.trino.connector.ResurfaceErrorCode.RESURFACE_FILESYSTEM_ERROR;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.COUNT_ALL;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.INTERVAL_MILLIS;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SIZE_RESPONSE_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SIZE_TOTAL_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SUM_SIZE_RESPONSE_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SUM_SIZE_TOTAL_BYTES;
 import static io.resurface.trino.connector.ResurfaceTables.MessageTable.TABLE_NAME;
 import static io.trino.spi.StandardErrorCode.*;
+import static io.trino.spi.expression.StandardFunctions.AND_FUNCTION_NAME;
+import static io.trino.spi.expression.StandardFunctions.NOT_EQUAL_OPERATOR_FUNCTION_NAME;
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.BooleanType.BOOLEAN;
 import static java.util.Objects.requireNonNull;
 
 public class ResurfaceMetadata implements ConnectorMetadata {
@@ -45,28 +71,161 @@ public class ResurfaceMetadata implements ConnectorMetadata {
 
     public static final String SCHEMA_VOLATILE = "volatile";
 
+    private static final FunctionName BITWISE_AND = new FunctionName("bitwise_and");
+
     public static final List<String> SCHEMA_NAMES = ImmutableList.of(SCHEMA_CUSTOM, SCHEMA_DATA, SCHEMA_RUNTIME, SCHEMA_RUNTIME_INDEXES, SCHEMA_SETTINGS, SCHEMA_SYSTEM, SCHEMA_VOLATILE);
 
     @Inject
-    public ResurfaceMetadata(ResurfaceTables tables) {
+    public ResurfaceMetadata(NodeManager nodeManager, ResurfaceTables tables) {
+        this.nodeManager = requireNonNull(nodeManager, "nodeManager is null");
         this.tables = requireNonNull(tables, "tables is null");
         if (tables.getViewsDir() != null) buildViews();
     }
 
+    private final Logger log = Logger.get(ResurfaceMetadata.class);
+    private final NodeManager nodeManager;
     private final ResurfaceTables tables;
     private final Map<SchemaTableName, ConnectorViewDefinition> views = new HashMap<>();
 
     @Override
     public Optional<ConstraintApplicationResult<ConnectorTableHandle>> applyFilter(ConnectorSession session, ConnectorTableHandle table, Constraint constraint) {
         ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (handle.getLimit().isPresent() || handle.getNewest().isPresent() || handle.isAggregated()) return Optional.empty();
+        boolean messages = TABLE_NAME.equals(handle.getSchemaTableName().getTableName());
+
+        // bitmap masks can't be expressed as domains, so they're taken from the expression instead
+        List<BitmapMask> newMasks = new ArrayList<>(handle.getMasks());
+        List<ConnectorExpression> remainingExpressions = new ArrayList<>();
+        for (ConnectorExpression conjunct : extractConjuncts(constraint.getExpression())) {
+            BitmapMask mask = messages ? getBitmapMask(conjunct, constraint.getAssignments()) : null;
+            if (mask == null) {
+                remainingExpressions.add(conjunct);
+            } else if (!newMasks.contains(mask)) {
+                newMasks.add(mask);
+            }
+        }
+
         TupleDomain<ColumnHandle> oldDomain = handle.getConstraint();
         TupleDomain<ColumnHandle> newDomain = oldDomain.intersect(constraint.getSummary());
-        if (oldDomain.equals(newDomain)) {
+        if (oldDomain.equals(newDomain) && newMasks.equals(handle.getMasks())) {
             return Optional.empty();
         } else {
-            handle = new ResurfaceTableHandle(handle.getSchemaTableName(), newDomain);
-            return Optional.of(new ConstraintApplicationResult<>(handle, constraint.getSummary(), constraint.getExpression(), false));
+            handle = new ResurfaceTableHandle(handle.getSchemaTableName(), newDomain, newMasks, handle.getLimit(), handle.getNewest(), false);
+            TupleDomain<ColumnHandle> remaining = constraint.getSummary();
+            if (messages) {
+                remaining = remaining.filter((column, domain) -> !MessageReader.isEnforced(((ResurfaceColumnHandle) column).getOrdinalPosition()));
+            }
+            return Optional.of(new ConstraintApplicationResult<>(handle, remaining, and(remainingExpressions), false));
+        }
+    }
+
+    private static ConnectorExpression and(List<ConnectorExpression> conjuncts) {
+        if (conjuncts.isEmpty()) return Constant.TRUE;
+        return conjuncts.size() == 1 ? conjuncts.get(0) : new Call(BOOLEAN, AND_FUNCTION_NAME, conjuncts);
+    }
+
+    private static List<ConnectorExpression> extractConjuncts(ConnectorExpression expression) {
+        if (expression.equals(Constant.TRUE)) return List.of();
+        if (!(expression instanceof Call call) || !call.getFunctionName().equals(AND_FUNCTION_NAME)) return List.of(expression);
+        List<ConnectorExpression> result = new ArrayList<>();
+        for (ConnectorExpression argument : call.getArguments()) result.addAll(extractConjuncts(argument));
+        return result;
+    }
+
+    // recognizes bitwise_and(bitmap_column, mask) <> 0, with operands in either order
+    private static BitmapMask getBitmapMask(ConnectorExpression expression, Map<String, ColumnHandle> assignments) {
+        if (!(expression instanceof Call call) || !call.getFunctionName().equals(NOT_EQUAL_OPERATOR_FUNCTION_NAME)) return null;
+        List<ConnectorExpression> arguments = call.getArguments();
+        ConnectorExpression bitwise = isZero(arguments.get(1)) ? arguments.get(0) : isZero(arguments.get(0)) ? arguments.get(1) : null;
+        if (!(bitwise instanceof Call and) || !and.getFunctionName().equals(BITWISE_AND) || and.getArguments().size() != 2) return null;
+        for (int i = 0; i < 2; i++) {
+            if (and.getArguments().get(i) instanceof Variable variable
+                    && and.getArguments().get(1 - i) instanceof Constant constant && constant.getValue() instanceof Long mask
+                    && assignments.get(variable.getName()) instanceof ResurfaceColumnHandle column
+                    && MessageReader.isBitmap(column.getOrdinalPosition())) {
+                return new BitmapMask(column.getOrdinalPosition(), mask);
+            }
         }
+        return null;
+    }
+
+    private static boolean isZero(ConnectorExpression expression) {
+        return expression instanceof Constant constant && Long.valueOf(0).equals(constant.getValue());
+    }
+
+    @Override
+    public Optional<AggregationApplicationResult<ConnectorTableHandle>> applyAggregation(ConnectorSession session, ConnectorTableHandle table, List<AggregateFunction> aggregates,
+                                                                                        Map<String, ColumnHandle> assignments, List<List<ColumnHandle>> groupingSets) {
+        ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (!TABLE_NAME.equals(handle.getSchemaTableName().getTableName()) || handle.isAggregated()) return Optional.empty();
+        if (!handle.getConstraint().isAll() || !handle.getMasks().isEmpty() || handle.getLimit().isPresent() || handle.getNewest().isPresent()) return Optional.empty();
+        if (!groupingSets.equals(List.of(List.of()))) return Optional.empty();
+        if (nodeManager.getAllNodes().size() != 1) return Optional.empty();  // each node would return its own row, with nothing left to combine them
+
+        Map<ResurfaceColumnHandle, Variable> variables = new LinkedHashMap<>();
+        ImmutableList.Builder<ConnectorExpression> projections = ImmutableList.builder();
+        for (AggregateFunction aggregate : aggregates) {
+            ResurfaceColumnHandle column = getAggregateColumn(aggregate, assignments);
+            if (column == null) return Optional.empty();
+            projections.add(variables.computeIfAbsent(column, c -> new Variable(c.getColumnName(), c.getColumnType())));
+        }
+        List<Assignment> resultAssignments = variables.keySet().stream()
+                .map(column -> new Assignment(column.getColumnName(), column, column.getColumnType()))
+                .collect(toImmutableList());
+
+        handle = new ResurfaceTableHandle(handle.getSchemaTableName(), handle.getConstraint(), handle.getMasks(), handle.getLimit(), handle.getNewest(), true);
+        return Optional.of(new AggregationApplicationResult<>(handle, projections.build(), resultAssignments, ImmutableMap.of(), false));
+    }
+
+    private static ResurfaceColumnHandle getAggregateColumn(AggregateFunction aggregate, Map<String, ColumnHandle> assignments) {
+        if (aggregate.isDistinct() || aggregate.getFilter().isPresent() || !aggregate.getSortItems().isEmpty()) return null;
+        if (!aggregate.getOutputType().equals(BIGINT)) return null;
+        List<ConnectorExpression> arguments = aggregate.getArguments();
+        if (aggregate.getFunctionName().equals("count") && arguments.isEmpty()) return COUNT_ALL;
+        if (aggregate.getFunctionName().equals("sum") && arguments.size() == 1 && arguments.get(0) instanceof Variable variable) {
+            ResurfaceColumnHandle column = (ResurfaceColumnHandle) assignments.get(variable.getName());
+            if (SIZE_RESPONSE_BYTES.equals(column)) return SUM_SIZE_RESPONSE_BYTES;
+            if (SIZE_TOTAL_BYTES.equals(column)) return SUM_SIZE_TOTAL_BYTES;
+        }
+        return null;
+    }
+
+    @Override
+    public Optional<LimitApplicationResult<ConnectorTableHandle>> applyLimit(ConnectorSession session, ConnectorTableHandle table, long limit) {
+        ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (!TABLE_NAME.equals(handle.getSchemaTableName().getTableName()) || handle.isAggregated()) return Optional.empty();
+        if (handle.getLimit().isPresent() && handle.getLimit().getAsLong() <= limit) return Optional.empty();
+        handle = new ResurfaceTableHandle(handle.getSchemaTableName(), handle.getConstraint(), handle.getMasks(), OptionalLong.of(limit), handle.getNewest(), false, handle.getTailWaitMillis());
+        return Optional.of(new LimitApplicationResult<>(handle, false, false));
+    }
+
+    @Override
+    public Optional<TopNApplicationResult<ConnectorTableHandle>> applyTopN(ConnectorSession session, ConnectorTableHandle table, long topNCount,
+                                                                          List<SortItem> sortItems, Map<String, ColumnHandle> assignments) {
+        ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (!TABLE_NAME.equals(handle.getSchemaTableName().getTableName()) || handle.getLimit().isPresent() || handle.isAggregated()) return Optional.empty();
+        if (handle.getNewest().isPresent() && handle.getNewest().getAsLong() <= topNCount) return Optional.empty();
+        if (sortItems.size() != 1 || sortItems.get(0).getSortOrder() != SortOrder.DESC_NULLS_LAST) return Optional.empty();
+        ResurfaceColumnHandle column = (ResurfaceColumnHandle) assignments.get(sortItems.get(0).getName());
+        if (column == null || column.getOrdinalPosition() != INTERVAL_MILLIS.getOrdinalPosition()) return Optional.empty();
+        handle = new ResurfaceTableHandle(handle.getSchemaTableName(), handle.getConstraint(), handle.getMasks(), handle.getLimit(), OptionalLong.of(topNCount), false);
+        return Optional.of(new TopNApplicationResult<>(handle, false, false));
+    }
+
+    // data.tail becomes a scan for messages newer than since, which the page source keeps polling until some arrive
+    @Override
+    public Optional<TableFunctionApplicationResult<ConnectorTableHandle>> applyTableFunction(ConnectorSession session, ConnectorTableFunctionHandle function) {
+        if (!(function instanceof TailTableFunction.TailFunctionHandle tail)) return Optional.empty();
+        if (nodeManager.getAllNodes().size() != 1) {
+            // each node would poll and bound its own shards, with nothing left to hold the query to max_rows
+            throw new TrinoException(NOT_SUPPORTED, "data.tail is only supported on single-node clusters");
+        }
+        Domain newer = Domain.create(ValueSet.ofRanges(Range.greaterThan(BIGINT, tail.since())), false);
+        TupleDomain<ColumnHandle> constraint = TupleDomain.withColumnDomains(Map.of(INTERVAL_MILLIS, newer));
+        ResurfaceTableHandle handle = new ResurfaceTableHandle(ResurfaceTables.MessageTable.getSchemaTableName(), constraint, List.of(),
+                OptionalLong.of(tail.maxRows()), OptionalLong.empty(), false, OptionalLong.of(tail.maxWait()));
+        List<ColumnHandle> columns = new ArrayList<>(getColumnHandles(handle).values());
+        return Optional.of(new TableFunctionApplicationResult<>(handle, columns));
     }
 
     @Override
@@ -103,6 +262,19 @@ public class ResurfaceMetadata implements ConnectorMetadata {
         return new ConnectorTableMetadata(tableHandle.getSchemaTableName(), tables.getColumns(tableHandle));
     }
 
+    @Override
+    public TableStatistics getTableStatistics(ConnectorSession session, ConnectorTableHandle table) {
+        ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (!TABLE_NAME.equals(handle.getSchemaTableName().getTableName()) || handle.isAggregated()) return TableStatistics.empty();
+        try {
+            return tables.getTableStatistics(handle, nodeManager.getAllNodes().size());
+        } catch (TrinoException e) {
+            if (!e.getErrorCode().equals(RESURFACE_FILESYSTEM_ERROR.toErrorCode())) throw e;
+            log.warn("Returning empty table statistics, shards not readable from this node: %s", e.getMessage());
+            return TableStatistics.empty();
+        }
+    }
+
     @Override
     public ConnectorTableProperties getTableProperties(ConnectorSession session, ConnectorTableHandle tableHandle) {
         return new ConnectorTableProperties();
@@ -117,6 +289,7 @@ public class ResurfaceMetadata implements ConnectorMetadata {
     public List<SchemaTableName> listTables(ConnectorSession session, Optional<String> schemaName) {
         ImmutableList.Builder<SchemaTableName> builder = ImmutableList.builder();
         builder.add(new SchemaTableName(SCHEMA_DATA, TABLE_NAME));
+        builder.add(ResurfaceTables.RollupTable.getSchemaTableName());
         views.keySet().stream()
                 .filter(table -> schemaName.map(table.getSchemaName()::contentEquals).orElse(true))
                 .forEach(builder::add);
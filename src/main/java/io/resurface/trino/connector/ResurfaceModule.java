@@ -16,6 +16,7 @@ public class ResurfaceModule implements Module {
         binder.bind(ResurfaceConnector.class).in(Scopes.SINGLETON);
         binder.bind(ResurfaceMetadata.class).in(Scopes.SINGLETON);
         binder.bind(ResurfaceSplitManager.class).in(Scopes.SINGLETON);
+        binder.bind(ResurfacePageSourceProvider.class).in(Scopes.SINGLETON);
         binder.bind(ResurfaceRecordSetProvider.class).in(Scopes.SINGLETON);
         binder.bind(ResurfaceTables.class).in(Scopes.SINGLETON);
     }
@@ -0,0 +1,43 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.spi.connector.*;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+public class ResurfacePageSourceProvider implements ConnectorPageSourceProvider {
+
+    @Inject
+    public ResurfacePageSourceProvider(ResurfaceConfig config, ResurfaceTables tables, ResurfaceRecordSetProvider recordSetProvider) {
+        this.pageSource = config.isMessagesPageSource();
+        this.recordSetProvider = requireNonNull(recordSetProvider, "recordSetProvider is null");
+        this.tables = requireNonNull(tables, "tables is null");
+    }
+
+    private final boolean pageSource;
+    private final ResurfaceRecordSetProvider recordSetProvider;
+    private final ResurfaceTables tables;
+
+    @Override
+    public ConnectorPageSource createPageSource(ConnectorTransactionHandle transaction, ConnectorSession session,
+                                                ConnectorSplit csplit, ConnectorTableHandle ctable,
+                                                List<ColumnHandle> columns, DynamicFilter dynamicFilter) {
+        ResurfaceSplit split = (ResurfaceSplit) csplit;
+        ResurfaceTableHandle table = (ResurfaceTableHandle) ctable;
+        boolean tail = table.getTailWaitMillis().isPresent();
+        if (table.isAggregated() || tail || (pageSource && ResurfaceTables.MessageTable.TABLE_NAME.equals(table.getSchemaTableName().getTableName()))) {
+            ImmutableList.Builder<ResurfaceColumnHandle> handles = ImmutableList.builder();
+            for (ColumnHandle handle : columns) handles.add((ResurfaceColumnHandle) handle);
+            if (table.isAggregated()) return new MessageAggregatePageSource(tables, handles.build(), table);
+            if (tail) return new TailPageSource(tables, handles.build(), table, dynamicFilter);
+            return new MessagePageSource(tables, handles.build(), table, split, dynamicFilter);
+        }
+        return new RecordPageSource(recordSetProvider.getRecordSet(transaction, session, split, table, columns));
+    }
+
+}
@@ -15,30 +15,29 @@ public class ResurfaceRecordSet implements RecordSet {
 
     public ResurfaceRecordSet(ResurfaceTables tables, ResurfaceSplit split, ResurfaceTableHandle handle, List<ResurfaceColumnHandle> columns) {
         this.columns = requireNonNull(columns, "column handles is null");
-        requireNonNull(split, "split is null");
         ImmutableList.Builder<Type> types = ImmutableList.builder();
         for (ResurfaceColumnHandle column : columns) types.add(column.getColumnType());
         this.columnTypes = types.build();
         this.handle = handle;
-        this.node_id = split.getNodeId();
-        this.slab = split.getSlab();
+        this.split = requireNonNull(split, "split is null");
         this.tables = requireNonNull(tables, "tables is null");
     }
 
     private final List<ResurfaceColumnHandle> columns;
     private final List<Type> columnTypes;
     private final ResurfaceTableHandle handle;
-    private final String node_id;
-    private final int slab;
+    private final ResurfaceSplit split;
     private final ResurfaceTables tables;
 
     @Override
     public RecordCursor cursor() {
         String table = handle.getSchemaTableName().getTableName();
         if (ResurfaceTables.MessageTable.TABLE_NAME.equals(table)) {
-            return new MessageRecordCursor(tables, columns, handle, slab);
+            return new MessageRecordCursor(tables, columns, handle, split);
+        } else if (ResurfaceTables.RollupTable.TABLE_NAME.equals(table)) {
+            return new RollupRecordCursor(tables, columns, handle, split);
         } else if (ResurfaceTables.ShardTable.TABLE_NAME.equals(table)) {
-            return new ShardRecordCursor(tables, columns, handle, node_id, slab);
+            return new ShardRecordCursor(tables, columns, handle, split);
         }
         throw new IllegalArgumentException("Table not implemented");
     }
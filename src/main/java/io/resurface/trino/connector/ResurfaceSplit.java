@@ -11,19 +11,31 @@ import io.trino.spi.connector.ConnectorSplit;
 import java.util.List;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class ResurfaceSplit implements ConnectorSplit {
 
+    public ResurfaceSplit(HostAddress address, String node_id, int slab) {
+        this(address, node_id, slab, 0, 1);
+    }
+
     @JsonCreator
-    public ResurfaceSplit(@JsonProperty("address") HostAddress address, @JsonProperty("node_id") String node_id, @JsonProperty("slab") int slab) {
+    public ResurfaceSplit(@JsonProperty("address") HostAddress address, @JsonProperty("node_id") String node_id, @JsonProperty("slab") int slab,
+                          @JsonProperty("part") int part, @JsonProperty("parts") int parts) {
+        checkArgument(parts > 0, "parts must be positive");
+        checkArgument(part >= 0 && part < parts, "part must be between 0 and parts");
         this.address = requireNonNull(address, "address is null");
         this.node_id = requireNonNull(node_id, "node_id is null");
+        this.part = part;
+        this.parts = parts;
         this.slab = slab;
     }
 
     private final HostAddress address;
     private final String node_id;
+    private final int part;
+    private final int parts;
     private final int slab;
 
     @JsonProperty
@@ -41,6 +53,16 @@ public class ResurfaceSplit implements ConnectorSplit {
         return node_id;
     }
 
+    @JsonProperty
+    public int getPart() {
+        return part;
+    }
+
+    @JsonProperty
+    public int getParts() {
+        return parts;
+    }
+
     @JsonProperty
     public int getSlab() {
         return slab;
@@ -53,7 +75,7 @@ public class ResurfaceSplit implements ConnectorSplit {
 
     @Override
     public String toString() {
-        return toStringHelper(this).add("address", address).add("node_id", node_id).toString();
+        return toStringHelper(this).add("address", address).add("node_id", node_id).add("slab", slab).add("part", part).toString();
     }
 
 }
@@ -2,37 +2,76 @@
 
 package io.resurface.trino.connector;
 
+import io.airlift.log.Logger;
 import io.trino.spi.Node;
 import io.trino.spi.NodeManager;
+import io.trino.spi.TrinoException;
 import io.trino.spi.connector.*;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.resurface.trino.connector.ResurfaceErrorCode.RESURFACE_FILESYSTEM_ERROR;
 import static java.util.Objects.requireNonNull;
 
 public class ResurfaceSplitManager implements ConnectorSplitManager {
 
     @Inject
-    public ResurfaceSplitManager(ResurfaceConfig config, NodeManager nodeManager) {
+    public ResurfaceSplitManager(ResurfaceConfig config, NodeManager nodeManager, ResurfaceTables tables) {
         this.config = config;
         this.nodeManager = requireNonNull(nodeManager, "nodeManager is null");
+        this.tables = requireNonNull(tables, "tables is null");
     }
 
     private final ResurfaceConfig config;
+    private final Logger log = Logger.get(ResurfaceSplitManager.class);
     private final NodeManager nodeManager;
+    private final ResurfaceTables tables;
 
     @Override
     public ConnectorSplitSource getSplits(ConnectorTransactionHandle transactionHandle, ConnectorSession session,
                                           ConnectorTableHandle table, DynamicFilter dynamicFilter, Constraint constraint) {
+        ResurfaceTableHandle handle = (ResurfaceTableHandle) table;
+        if (handle.isAggregated() || handle.getTailWaitMillis().isPresent()) {
+            Node node = nodeManager.getCurrentNode();  // aggregates & tails are only pushed down on single-node clusters
+            return new FixedSplitSource(List.of(new ResurfaceSplit(node.getHostAndPort(), node.getNodeIdentifier(), 1)));
+        }
+
+        int[] parts = new int[config.getMessagesSlabs() + 1];
+        for (int i = 1; i <= config.getMessagesSlabs(); i++) parts[i] = getParts(handle, i);
+
         List<ConnectorSplit> splits = new ArrayList<>();
         for (Node node : nodeManager.getAllNodes()) {
             for (int i = 1; i <= config.getMessagesSlabs(); i++) {
-                splits.add(new ResurfaceSplit(node.getHostAndPort(), node.getNodeIdentifier(), i));
+                for (int part = 0; part < parts[i]; part++) {
+                    splits.add(new ResurfaceSplit(node.getHostAndPort(), node.getNodeIdentifier(), i, part, parts[i]));
+                }
             }
         }
-        return new FixedSplitSource(splits);
+        // record cursors ignore dynamic filters, so waiting for them only pays off when the page source runs
+        boolean filtered = config.isMessagesPageSource() && ResurfaceTables.MessageTable.TABLE_NAME.equals(handle.getSchemaTableName().getTableName());
+        if (!filtered) return new FixedSplitSource(splits);
+        return new MessageSplitSource(splits, dynamicFilter, config.getMessagesDynamicFilterWaitMillis());
+    }
+
+    private int getParts(ResurfaceTableHandle handle, int slab) {
+        long target = config.getMessagesSplitBytes();
+        if (target <= 0 || !ResurfaceTables.MessageTable.TABLE_NAME.equals(handle.getSchemaTableName().getTableName())) return 1;
+        if (handle.getLimit().isPresent() || handle.getNewest().isPresent()) return 1;  // limited scans stop early, so fanning out only adds splits
+
+        List<File> files;
+        try {
+            files = tables.getFiles(handle, slab);
+        } catch (TrinoException e) {
+            if (!e.getErrorCode().equals(RESURFACE_FILESYSTEM_ERROR.toErrorCode())) throw e;
+            log.warn("Using a single split per slab, shards not readable from this node: %s", e.getMessage());
+            return 1;
+        }
+        long bytes = files.stream().mapToLong(File::length).sum();
+        long parts = (bytes + target - 1) / target;
+        return (int) Math.max(1, Math.min(files.size(), parts));
     }
 
 }
@@ -0,0 +1,162 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.log.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResurfaceStats implements ResurfaceStatsMXBean {
+
+    private final AtomicLong cacheBytes = new AtomicLong();
+    private final AtomicLong cacheEvictions = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong listingHits = new AtomicLong();
+    private final AtomicLong listingMisses = new AtomicLong();
+    private final AtomicLong listingNanos = new AtomicLong();
+    private final Logger log = Logger.get(ResurfaceStats.class);
+    private ObjectName name;
+    private final AtomicLong scanBytes = new AtomicLong();
+    private final AtomicLong scanDecodeNanos = new AtomicLong();
+    private final AtomicLong scanMaterializationNanos = new AtomicLong();
+    private final AtomicLong scanRows = new AtomicLong();
+    private final AtomicLong scanShards = new AtomicLong();
+
+    public synchronized void export(String catalogName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName n = new ObjectName("io.resurface.trino.connector:type=ResurfaceStats,name=" + ObjectName.quote(catalogName));
+            if (server.isRegistered(n)) server.unregisterMBean(n);
+            server.registerMBean(this, n);
+            name = n;
+        } catch (JMException e) {
+            log.warn("Failed to export stats for catalog: " + catalogName);
+        }
+    }
+
+    public synchronized void unexport() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // nothing to do here
+        }
+        name = null;
+    }
+
+    @Override
+    public long getCacheBytes() {
+        return cacheBytes.get();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cacheEvictions.get();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public long getListingHits() {
+        return listingHits.get();
+    }
+
+    @Override
+    public double getListingHitRate() {
+        long hits = listingHits.get();
+        long total = hits + listingMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getListingMisses() {
+        return listingMisses.get();
+    }
+
+    @Override
+    public long getListingNanos() {
+        return listingNanos.get();
+    }
+
+    @Override
+    public long getScanBytes() {
+        return scanBytes.get();
+    }
+
+    @Override
+    public long getScanDecodeNanos() {
+        return scanDecodeNanos.get();
+    }
+
+    @Override
+    public long getScanMaterializationNanos() {
+        return scanMaterializationNanos.get();
+    }
+
+    @Override
+    public long getScanRows() {
+        return scanRows.get();
+    }
+
+    @Override
+    public long getScanShards() {
+        return scanShards.get();
+    }
+
+    public void recordCacheBytes(long bytes) {
+        cacheBytes.addAndGet(bytes);
+    }
+
+    public void recordCacheEviction() {
+        cacheEvictions.incrementAndGet();
+    }
+
+    public void recordCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    public void recordListingHit() {
+        listingHits.incrementAndGet();
+    }
+
+    public void recordListingMiss(long nanos) {
+        listingMisses.incrementAndGet();
+        listingNanos.addAndGet(nanos);
+    }
+
+    public void recordMaterialization(long nanos) {
+        scanMaterializationNanos.addAndGet(nanos);
+    }
+
+    public void recordScan(long bytes, long decodeNanos, long rows, long shards) {
+        scanBytes.addAndGet(bytes);
+        scanDecodeNanos.addAndGet(decodeNanos);
+        scanRows.addAndGet(rows);
+        scanShards.addAndGet(shards);
+    }
+
+}
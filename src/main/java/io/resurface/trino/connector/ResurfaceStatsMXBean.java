@@ -0,0 +1,35 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+public interface ResurfaceStatsMXBean {
+
+    long getCacheBytes();
+
+    long getCacheEvictions();
+
+    long getCacheHits();
+
+    double getCacheHitRate();
+
+    long getCacheMisses();
+
+    long getListingHits();
+
+    double getListingHitRate();
+
+    long getListingMisses();
+
+    long getListingNanos();
+
+    long getScanBytes();
+
+    long getScanDecodeNanos();
+
+    long getScanMaterializationNanos();
+
+    long getScanRows();
+
+    long getScanShards();
+
+}
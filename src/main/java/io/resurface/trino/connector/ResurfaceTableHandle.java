@@ -9,7 +9,9 @@ import io.trino.spi.connector.ConnectorTableHandle;
 import io.trino.spi.connector.SchemaTableName;
 import io.trino.spi.predicate.TupleDomain;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.OptionalLong;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.util.Objects.requireNonNull;
@@ -20,28 +22,54 @@ public class ResurfaceTableHandle implements ConnectorTableHandle {
         this(schemaTableName, TupleDomain.all());
     }
 
+    public ResurfaceTableHandle(SchemaTableName schemaTableName, TupleDomain<ColumnHandle> constraint) {
+        this(schemaTableName, constraint, List.of(), OptionalLong.empty(), OptionalLong.empty(), false);
+    }
+
+    public ResurfaceTableHandle(SchemaTableName schemaTableName, TupleDomain<ColumnHandle> constraint, List<BitmapMask> masks,
+                                OptionalLong limit, OptionalLong newest, boolean aggregated) {
+        this(schemaTableName, constraint, masks, limit, newest, aggregated, OptionalLong.empty());
+    }
+
     @JsonCreator
     public ResurfaceTableHandle(
             @JsonProperty("schemaTableName") SchemaTableName schemaTableName,
-            @JsonProperty("constraint") TupleDomain<ColumnHandle> constraint) {
+            @JsonProperty("constraint") TupleDomain<ColumnHandle> constraint,
+            @JsonProperty("masks") List<BitmapMask> masks,
+            @JsonProperty("limit") OptionalLong limit,
+            @JsonProperty("newest") OptionalLong newest,
+            @JsonProperty("aggregated") boolean aggregated,
+            @JsonProperty("tailWaitMillis") OptionalLong tailWaitMillis) {
         this.schemaTableName = requireNonNull(schemaTableName, "schemaTableName is null");
         this.constraint = requireNonNull(constraint, "constraint is null");
+        this.limit = requireNonNull(limit, "limit is null");
+        this.masks = List.copyOf(requireNonNull(masks, "masks is null"));
+        this.newest = requireNonNull(newest, "newest is null");
+        this.aggregated = aggregated;
+        this.tailWaitMillis = requireNonNull(tailWaitMillis, "tailWaitMillis is null");
     }
 
+    private final boolean aggregated;
     private final TupleDomain<ColumnHandle> constraint;
+    private final OptionalLong limit;
+    private final List<BitmapMask> masks;
+    private final OptionalLong newest;
     private final SchemaTableName schemaTableName;
+    private final OptionalLong tailWaitMillis;
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ResurfaceTableHandle that = (ResurfaceTableHandle) o;
-        return Objects.equals(schemaTableName, that.schemaTableName) && Objects.equals(constraint, that.constraint);
+        return Objects.equals(schemaTableName, that.schemaTableName) && Objects.equals(constraint, that.constraint)
+                && Objects.equals(masks, that.masks) && Objects.equals(limit, that.limit) && Objects.equals(newest, that.newest) && aggregated == that.aggregated
+                && Objects.equals(tailWaitMillis, that.tailWaitMillis);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(schemaTableName, constraint);
+        return Objects.hash(schemaTableName, constraint, masks, limit, newest, aggregated, tailWaitMillis);
     }
 
     @JsonProperty
@@ -49,14 +77,40 @@ public class ResurfaceTableHandle implements ConnectorTableHandle {
         return constraint;
     }
 
+    @JsonProperty
+    public OptionalLong getLimit() {
+        return limit;
+    }
+
+    @JsonProperty
+    public List<BitmapMask> getMasks() {
+        return masks;
+    }
+
+    @JsonProperty
+    public OptionalLong getNewest() {
+        return newest;
+    }
+
     @JsonProperty
     public SchemaTableName getSchemaTableName() {
         return schemaTableName;
     }
 
+    // present when scanning for data.tail, which waits up to this long for new messages
+    @JsonProperty
+    public OptionalLong getTailWaitMillis() {
+        return tailWaitMillis;
+    }
+
+    @JsonProperty
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
     @Override
     public String toString() {
-        return toStringHelper(this).add("schemaTableName", schemaTableName).toString();
+        return toStringHelper(this).add("schemaTableName", schemaTableName).add("masks", masks).add("limit", limit).add("newest", newest).add("aggregated", aggregated).add("tailWaitMillis", tailWaitMillis).toString();
     }
 
 }
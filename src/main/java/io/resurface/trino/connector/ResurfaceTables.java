@@ -4,21 +4,36 @@ package io.resurface.trino.connector;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.log.Logger;
+import io.trino.spi.TrinoException;
 import io.trino.spi.connector.ColumnHandle;
 import io.trino.spi.connector.ColumnMetadata;
 import io.trino.spi.connector.SchemaTableName;
 import io.trino.spi.predicate.NullableValue;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.statistics.TableStatistics;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import static io.airlift.slice.Slices.utf8Slice;
+import static io.resurface.trino.connector.ResurfaceErrorCode.RESURFACE_FILESYSTEM_ERROR;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static io.trino.spi.type.BigintType.BIGINT;
 import static io.trino.spi.type.BooleanType.BOOLEAN;
 import static io.trino.spi.type.IntegerType.INTEGER;
@@ -26,40 +41,160 @@ import static io.trino.spi.type.VarcharType.createUnboundedVarcharType;
 
 public class ResurfaceTables {
 
+    public static final int READ_BUFFER_BYTES = 1000000;
+
     @Inject
     public ResurfaceTables(ResurfaceConfig config) {
-        location = new DataLocation(config.getMessagesDir());
+        location = new DataLocation(config.getMessagesDir(), stats);
+        messagesCache = config.getMessagesCacheBytes() <= 0 ? null : new ShardPageCache(config.getMessagesCacheBytes(), stats);
+        messagesIncrementalTail = config.isMessagesIncrementalTail();
+        messagesMmap = config.isMessagesMmap();
+        messagesPrefetchBudget = new Semaphore((int) Math.max(0, Math.min(Integer.MAX_VALUE, config.getMessagesPrefetchBytes())));
+        messagesPrefetchExecutor = config.getMessagesPrefetchThreads() <= 0 ? null : Executors.newFixedThreadPool(config.getMessagesPrefetchThreads(),
+                new ThreadFactoryBuilder().setNameFormat("resurface-prefetch-%s").setDaemon(true).build());
+        messagesSlabs = config.getMessagesSlabs();
         viewsDir = config.getViewsDir();
 
         ImmutableMap.Builder<SchemaTableName, ResurfaceTableHandle> tablesBuilder = ImmutableMap.builder();
         tablesBuilder.put(MessageTable.getSchemaTableName(), new ResurfaceTableHandle(MessageTable.getSchemaTableName()));
+        tablesBuilder.put(RollupTable.getSchemaTableName(), new ResurfaceTableHandle(RollupTable.getSchemaTableName()));
         tablesBuilder.put(ShardTable.getSchemaTableName(), new ResurfaceTableHandle(ShardTable.getSchemaTableName()));
         tables = tablesBuilder.build();
 
         ImmutableMap.Builder<SchemaTableName, List<ColumnMetadata>> tableColumnsBuilder = ImmutableMap.builder();
         tableColumnsBuilder.put(MessageTable.getSchemaTableName(), MessageTable.getColumns());
+        tableColumnsBuilder.put(RollupTable.getSchemaTableName(), RollupTable.getColumns());
         tableColumnsBuilder.put(ShardTable.getSchemaTableName(), ShardTable.getColumns());
         tableColumns = tableColumnsBuilder.build();
     }
 
+    private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+    private final Map<String, ShardIndex> indexes = new ConcurrentHashMap<>();
+    private volatile boolean indexesWritable = true;
     private final DataLocation location;
+    private final Logger log = Logger.get(ResurfaceTables.class);
+    private final ShardPageCache messagesCache;
+    private final boolean messagesIncrementalTail;
+    private final boolean messagesMmap;
+    private final Semaphore messagesPrefetchBudget;
+    private final ExecutorService messagesPrefetchExecutor;
+    private final int messagesSlabs;
+    private volatile boolean rollupsWritable = true;
+    private final ResurfaceStats stats = new ResurfaceStats();
+    private MessageStatistics statistics = new MessageStatistics();
+    private volatile List<File> swept;
     private final Map<SchemaTableName, ResurfaceTableHandle> tables;
     private final Map<SchemaTableName, List<ColumnMetadata>> tableColumns;
     private final String viewsDir;
 
+    // read buffers are shared by every reader on this worker, so small shards don't each allocate a new one
+    public byte[] borrowReadBuffer() {
+        byte[] buffer = buffers.poll();
+        return buffer == null ? new byte[READ_BUFFER_BYTES] : buffer;
+    }
+
+    public void returnReadBuffer(byte[] buffer) {
+        buffers.offer(buffer);
+    }
+
     public List<ColumnMetadata> getColumns(ResurfaceTableHandle tableHandle) {
         return tableColumns.get(tableHandle.getSchemaTableName());
     }
 
     public List<File> getFiles(ResurfaceTableHandle handle, int slab) {
-        return location.files().stream()
+        return getFiles(handle, slab, 0, 1);
+    }
+
+    public List<File> getFiles(ResurfaceTableHandle handle, ResurfaceSplit split) {
+        return getFiles(handle, split.getSlab(), split.getPart(), split.getParts());
+    }
+
+    private List<File> getFiles(ResurfaceTableHandle handle, int slab, int part, int parts) {
+        boolean indexed = MessageTable.TABLE_NAME.equals(handle.getSchemaTableName().getTableName())
+                && (!handle.getConstraint().isAll() || !handle.getMasks().isEmpty());
+        List<File> listing = location.files();
+        sweep(listing);
+        return listing.stream()
                 .filter(f -> !f.isHidden())
                 .filter(f -> f.getName().startsWith("message." + slab))
                 .filter(f -> f.getName().endsWith(".blkc"))
-                .filter(f -> getPredicateTest(f, handle))
+                .filter(f -> parts == 1 || Math.floorMod(f.getName().hashCode(), parts) == part)
+                .filter(f -> getPredicateTest(f, handle.getConstraint()))
+                .filter(f -> !indexed || getIndexTest(f, handle.getConstraint(), handle.getMasks()))
                 .collect(Collectors.toList());
     }
 
+    // forgets the indexes of shards that have rolled off, and deletes their index & rollup sidecars, once for each new directory listing
+    private void sweep(List<File> listing) {
+        if (listing == swept) return;
+        swept = listing;
+        Set<String> shards = listing.stream().map(File::getName).filter(name -> name.endsWith(".blkc")).collect(Collectors.toSet());
+        indexes.keySet().retainAll(shards);
+        for (File f : listing) {
+            if (f.isHidden()) continue;
+            if (indexesWritable) deleteOrphan(f, ShardIndex.SUFFIX, shards);
+            if (rollupsWritable) deleteOrphan(f, ShardRollup.SUFFIX, shards);
+        }
+    }
+
+    private void deleteOrphan(File sidecar, String suffix, Set<String> shards) {
+        String name = sidecar.getName();
+        if (!name.endsWith(suffix) || shards.contains(name.substring(0, name.length() - suffix.length()))) return;
+        if (!sidecar.delete() && sidecar.exists()) log.warn("Failed to delete orphaned sidecar: " + sidecar);
+    }
+
+    public ShardIndex getIndex(File shard) {
+        ShardIndex index = indexes.get(shard.getName());
+        if (index != null && index.isCurrent(shard)) return index;
+        File f = new File(shard.getParentFile(), shard.getName() + ShardIndex.SUFFIX);
+        if (!f.exists()) return null;
+        try {
+            index = ShardIndex.read(f);
+        } catch (IOException e) {
+            log.warn("Failed to read shard index: " + f);
+            return null;
+        }
+        if (index == null || !index.isCurrent(shard)) return null;
+        indexes.put(shard.getName(), index);
+        return index;
+    }
+
+    public synchronized TableStatistics getTableStatistics(ResurfaceTableHandle handle, int nodes) {
+        List<File> files = new ArrayList<>();
+        for (int slab = 1; slab <= messagesSlabs; slab++) files.addAll(getFiles(handle, slab));
+        Set<String> names = files.stream().map(File::getName).collect(Collectors.toSet());
+
+        // unconstrained statistics are kept across calls, so only newly closed shards get folded in
+        MessageStatistics result;
+        if (!handle.getConstraint().isAll() || !handle.getMasks().isEmpty()) {
+            result = new MessageStatistics();
+        } else {
+            if (!names.containsAll(statistics.getShards())) statistics = new MessageStatistics();
+            result = statistics;
+        }
+
+        String open_file = getOpenFile();
+        long unindexedBytes = 0;
+        for (File f : files) {
+            ShardIndex index = f.getName().equals(open_file) ? null : getIndex(f);
+            if (index == null) {
+                unindexedBytes += f.length();
+            } else {
+                result.add(f, index);
+            }
+        }
+        return result.build(unindexedBytes, nodes);
+    }
+
+    private boolean getIndexTest(File f, TupleDomain<ColumnHandle> constraint, List<BitmapMask> masks) {
+        ShardIndex index = getIndex(f);
+        return index == null || (index.mayMatch(constraint) && index.mayMatch(masks));
+    }
+
+    public boolean mayMatch(File shard, TupleDomain<ColumnHandle> constraint) {
+        return constraint.isAll() || (getPredicateTest(shard, constraint) && getIndexTest(shard, constraint, List.of()));
+    }
+
     public String getOpenFile() {
         List<File> files = location.files().stream()
                 .filter(f -> !f.isHidden())
@@ -72,27 +207,110 @@ public class ResurfaceTables {
             try {
                 return Files.readString(files.get(0).toPath());
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                throw new TrinoException(RESURFACE_FILESYSTEM_ERROR, "Failed to read open shard: " + files.get(0), e);
             }
         } else {
             throw new RuntimeException("Unexpected number of active files: " + files.size());
         }
     }
 
-    private boolean getPredicateTest(File f, ResurfaceTableHandle h) {
+    private boolean getPredicateTest(File f, TupleDomain<ColumnHandle> constraint) {
         Map<ColumnHandle, NullableValue> x = new HashMap<>();
         x.put(MessageTable.SHARD_FILE, new NullableValue(createUnboundedVarcharType(), utf8Slice(f.getName())));
-        return h.getConstraint().asPredicate().test(x);
+        return constraint.asPredicate().test(x);
+    }
+
+    public void putIndex(File shard, ShardIndex index) {
+        indexes.put(shard.getName(), index);
+        if (!indexesWritable) return;
+        File f = new File(shard.getParentFile(), shard.getName() + ShardIndex.SUFFIX);
+        if (!writeSidecar(f, index::write)) {
+            indexesWritable = false;
+            log.warn("Disabled writing shard indexes, failed to write: " + f);
+        }
+    }
+
+    // written to a hidden temp file first, so readers never see a partial sidecar
+    private boolean writeSidecar(File f, SidecarWriter writer) {
+        File temp = new File(f.getParentFile(), "." + f.getName() + ".tmp");
+        try {
+            writer.write(temp);
+            Files.move(temp.toPath(), f.toPath(), ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            if (temp.exists() && !temp.delete()) log.warn("Failed to delete: " + temp);
+            return false;
+        }
+    }
+
+    public ShardRollup getRollup(File shard) {
+        File f = new File(shard.getParentFile(), shard.getName() + ShardRollup.SUFFIX);
+        if (!f.exists()) return null;
+        try {
+            ShardRollup rollup = ShardRollup.read(f);
+            return rollup == null || !rollup.isCurrent(shard) ? null : rollup;
+        } catch (IOException e) {
+            log.warn("Failed to read shard rollup: " + f);
+            return null;
+        }
+    }
+
+    public void putRollup(File shard, ShardRollup rollup) {
+        if (!rollupsWritable) return;
+        File f = new File(shard.getParentFile(), shard.getName() + ShardRollup.SUFFIX);
+        if (!writeSidecar(f, rollup::write)) {
+            rollupsWritable = false;
+            log.warn("Disabled writing shard rollups, failed to write: " + f);
+        }
+    }
+
+    public void shutdown() {
+        if (messagesPrefetchExecutor != null) messagesPrefetchExecutor.shutdownNow();
     }
 
     public ResurfaceTableHandle getTable(SchemaTableName tableName) {
         return tables.get(tableName);
     }
 
+    public ResurfaceStats getStats() {
+        return stats;
+    }
+
+    // returns null when caching is disabled
+    public ShardPageCache getMessagesCache() {
+        return messagesCache;
+    }
+
+    public int getMessagesSlabs() {
+        return messagesSlabs;
+    }
+
+    // bytes of prefetch buffers all readers on this worker may hold at once
+    public Semaphore getMessagesPrefetchBudget() {
+        return messagesPrefetchBudget;
+    }
+
+    // returns null when prefetching is disabled
+    public ExecutorService getMessagesPrefetchExecutor() {
+        return messagesPrefetchExecutor;
+    }
+
+    public boolean isMessagesIncrementalTail() {
+        return messagesIncrementalTail;
+    }
+
+    public boolean isMessagesMmap() {
+        return messagesMmap;
+    }
+
     public String getViewsDir() {
         return viewsDir;
     }
 
+    private interface SidecarWriter {
+        void write(File f) throws IOException;
+    }
+
     public static final class MessageTable {
 
         public static final List<ColumnMetadata> COLUMNS = ImmutableList.of(
@@ -155,6 +373,19 @@ public class ResurfaceTables {
                 new ColumnMetadata("size_response_headers_bytes", INTEGER)                         // 56 (v3.6)
         );
 
+        public static final ResurfaceColumnHandle INTERVAL_MILLIS = new ResurfaceColumnHandle("interval_millis", BIGINT, 7);
+
+        public static final ResurfaceColumnHandle SIZE_RESPONSE_BYTES = new ResurfaceColumnHandle("size_response_bytes", INTEGER, 23);
+
+        public static final ResurfaceColumnHandle SIZE_TOTAL_BYTES = new ResurfaceColumnHandle("size_total_bytes", BIGINT, 30);
+
+        // pushed-down aggregates, numbered past the end of the table
+        public static final ResurfaceColumnHandle COUNT_ALL = new ResurfaceColumnHandle("count_all", BIGINT, 1000);
+
+        public static final ResurfaceColumnHandle SUM_SIZE_RESPONSE_BYTES = new ResurfaceColumnHandle("sum_size_response_bytes", BIGINT, 1023);
+
+        public static final ResurfaceColumnHandle SUM_SIZE_TOTAL_BYTES = new ResurfaceColumnHandle("sum_size_total_bytes", BIGINT, 1030);
+
         public static final ColumnHandle SHARD_FILE = new ResurfaceColumnHandle("shard_file", createUnboundedVarcharType(), 49);
 
         public static final String TABLE_NAME = "message";
@@ -169,6 +400,31 @@ public class ResurfaceTables {
 
     }
 
+    public static final class RollupTable {
+
+        // one row per minute, host & response_code within each split, so queries sum these up across splits
+        public static final List<ColumnMetadata> COLUMNS = ImmutableList.of(
+                new ColumnMetadata("interval_millis", BIGINT),                                     // 0 (start of minute)
+                new ColumnMetadata("host", createUnboundedVarcharType()),                          // 1
+                new ColumnMetadata("response_code", createUnboundedVarcharType()),                 // 2
+                new ColumnMetadata("message_count", BIGINT),                                       // 3
+                new ColumnMetadata("response_time_millis_count", BIGINT),                          // 4
+                new ColumnMetadata("response_time_millis_sum", BIGINT),                            // 5
+                new ColumnMetadata("size_total_bytes_sum", BIGINT)                                 // 6
+        );
+
+        public static final String TABLE_NAME = "message_rollup_1m";
+
+        public static List<ColumnMetadata> getColumns() {
+            return COLUMNS;
+        }
+
+        public static SchemaTableName getSchemaTableName() {
+            return new SchemaTableName(ResurfaceMetadata.SCHEMA_DATA, TABLE_NAME);
+        }
+
+    }
+
     public static final class ShardTable {
 
         public static final List<ColumnMetadata> COLUMNS = ImmutableList.of(
@@ -0,0 +1,145 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.connector.RecordCursor;
+import io.trino.spi.type.Type;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+public class RollupRecordCursor implements RecordCursor {
+
+    public RollupRecordCursor(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, ResurfaceSplit split) {
+        this.column_names = new String[columns.size()];
+        this.column_ordinal_positions = new int[columns.size()];
+        this.column_types = new Type[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            this.column_names[i] = columns.get(i).getColumnName();
+            this.column_ordinal_positions[i] = columns.get(i).getOrdinalPosition();
+            this.column_types[i] = columns.get(i).getColumnType();
+        }
+        this.handle = handle;
+        this.split = split;
+        this.tables = tables;
+    }
+
+    private final String[] column_names;
+    private final int[] column_ordinal_positions;
+    private final Type[] column_types;
+    private long completed_bytes;
+    private ShardRollup.Group group;
+    private Iterator<ShardRollup.Group> groups;
+    private final ResurfaceTableHandle handle;
+    private long read_nanos;
+    private ShardRollup rollup;
+    private final ResurfaceSplit split;
+    private final ResurfaceTables tables;
+
+    @Override
+    public boolean advanceNextPosition() {
+        if (groups == null) load();
+        if (groups.hasNext()) {
+            group = groups.next();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    // closed shards are read from their rollup files, built on first use, while the open shard is always scanned
+    private void load() {
+        long start = System.nanoTime();
+        String open_file = tables.getOpenFile();
+        ResurfaceTableHandle messages = new ResurfaceTableHandle(ResurfaceTables.MessageTable.getSchemaTableName());
+        rollup = ShardRollup.empty();
+        for (File f : tables.getFiles(handle, split)) {
+            boolean closed = !f.getName().equals(open_file);
+            ShardRollup r = closed ? tables.getRollup(f) : null;
+            if (r == null) {
+                r = ShardRollup.create(f);
+                MessageReader reader = new MessageReader(tables, messages, List.of(f));
+                try (reader) {
+                    while (reader.next()) r.add(reader);
+                }
+                completed_bytes += reader.getCompletedBytes();  // final once the reader is closed
+                if (closed && r.isCurrent(f)) tables.putRollup(f, r);
+            } else {
+                completed_bytes += new File(f.getParentFile(), f.getName() + ShardRollup.SUFFIX).length();
+            }
+            rollup.addAll(r);
+        }
+        groups = rollup.getGroups().iterator();
+        read_nanos = System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() {
+        groups = List.<ShardRollup.Group>of().iterator();
+        rollup = null;
+    }
+
+    @Override
+    public boolean getBoolean(int field) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getCompletedBytes() {
+        return completed_bytes;
+    }
+
+    @Override
+    public double getDouble(int field) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getLong(int field) {
+        return switch (column_ordinal_positions[field]) {
+            case 0 -> group.minute();
+            case 3 -> rollup.getTotal(group, ShardRollup.COUNT);
+            case 4 -> rollup.getTotal(group, ShardRollup.RESPONSE_TIME_COUNT);
+            case 5 -> rollup.getTotal(group, ShardRollup.RESPONSE_TIME_SUM);
+            case 6 -> rollup.getTotal(group, ShardRollup.SIZE_TOTAL_SUM);
+            default -> throw new IllegalArgumentException("Cannot get as long: " + column_names[field]);
+        };
+    }
+
+    @Override
+    public Object getObject(int field) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getReadTimeNanos() {
+        return read_nanos;
+    }
+
+    @Override
+    public Slice getSlice(int field) {
+        return switch (column_ordinal_positions[field]) {
+            case 1 -> group.host();
+            case 2 -> group.responseCode();
+            default -> throw new IllegalArgumentException("Cannot get as string: " + column_names[field]);
+        };
+    }
+
+    @Override
+    public Type getType(int field) {
+        return column_types[field];
+    }
+
+    @Override
+    public boolean isNull(int field) {
+        return switch (column_ordinal_positions[field]) {
+            case 0 -> group.minute() == ShardRollup.NULL_MINUTE;
+            case 1 -> group.host() == null;
+            case 2 -> group.responseCode() == null;
+            default -> false;
+        };
+    }
+
+}
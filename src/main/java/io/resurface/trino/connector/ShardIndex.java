@@ -0,0 +1,251 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+import io.airlift.slice.Slice;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.Range;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.predicate.ValueSet;
+import io.trino.spi.type.Type;
+
+import java.io.*;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+public class ShardIndex {
+
+    public static final String SUFFIX = ".idx";
+
+    private static final int VERSION = 3;
+
+    private static final int BITMAP_FIRST = 31;
+    private static final int BITMAP_LAST = 48;
+
+    private static final int BLOOM_EXPECTED_INSERTIONS = 1000;
+    private static final double BLOOM_FPP = 0.01;
+
+    // numeric columns tracked with min/max/sum, indexed by position in this array
+    static final int[] RANGE_ORDINALS = {7, 21, 23, 30};
+
+    // varchar columns tracked with bloom filters and sizes, indexed by position in this array
+    static final int[] BLOOM_ORDINALS = {1, 6, 12, 17};
+
+    @SuppressWarnings("unchecked")
+    private ShardIndex(long length, long lastModified) {
+        this.length = length;
+        this.lastModified = lastModified;
+        this.bitmaps = new long[BITMAP_LAST - BITMAP_FIRST + 1];
+        this.blooms = new BloomFilter[BLOOM_ORDINALS.length];
+        for (int i = 0; i < blooms.length; i++) blooms[i] = newBloomFilter();
+        this.maxs = new long[RANGE_ORDINALS.length];
+        this.mins = new long[RANGE_ORDINALS.length];
+        this.nonNulls = new long[RANGE_ORDINALS.length];
+        this.sums = new long[RANGE_ORDINALS.length];
+        this.stringBytes = new long[BLOOM_ORDINALS.length];
+        this.stringNulls = new long[BLOOM_ORDINALS.length];
+    }
+
+    private final long[] bitmaps;
+    private final BloomFilter<Slice>[] blooms;
+    private final long lastModified;
+    private final long length;
+    private final long[] maxs;
+    private final long[] mins;
+    private final long[] nonNulls;
+    private long rowCount;
+    private final long[] stringBytes;
+    private final long[] stringNulls;
+    private final long[] sums;
+
+    public static ShardIndex create(File shard) {
+        return new ShardIndex(shard.length(), shard.lastModified());
+    }
+
+    public void add(MessageReader reader) {
+        rowCount++;
+        for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+            int ordinal = RANGE_ORDINALS[i];
+            if (reader.isNull(ordinal)) continue;
+            long value = reader.getLong(ordinal);
+            sums[i] += value;
+            if (nonNulls[i]++ == 0) {
+                mins[i] = value;
+                maxs[i] = value;
+            } else {
+                mins[i] = Math.min(mins[i], value);
+                maxs[i] = Math.max(maxs[i], value);
+            }
+        }
+        for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+            int ordinal = BLOOM_ORDINALS[i];
+            if (reader.isNull(ordinal)) {
+                stringNulls[i]++;
+            } else {
+                Slice value = reader.getSlice(ordinal);
+                stringBytes[i] += value.length();
+                blooms[i].put(value);
+            }
+        }
+        for (int i = 0; i < bitmaps.length; i++) bitmaps[i] |= reader.getLong(BITMAP_FIRST + i);
+    }
+
+    public BloomFilter<Slice> getBloomFilter(int ordinal) {
+        return blooms[getBloomIndex(ordinal)];
+    }
+
+    private static int getBloomIndex(int ordinal) {
+        for (int i = 0; i < BLOOM_ORDINALS.length; i++) if (BLOOM_ORDINALS[i] == ordinal) return i;
+        throw new IllegalArgumentException("Not indexed: " + ordinal);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public OptionalLong getMax(int ordinal) {
+        int i = getRangeIndex(ordinal);
+        return nonNulls[i] == 0 ? OptionalLong.empty() : OptionalLong.of(maxs[i]);
+    }
+
+    public OptionalLong getMin(int ordinal) {
+        int i = getRangeIndex(ordinal);
+        return nonNulls[i] == 0 ? OptionalLong.empty() : OptionalLong.of(mins[i]);
+    }
+
+    public long getNonNullCount(int ordinal) {
+        return nonNulls[getRangeIndex(ordinal)];
+    }
+
+    private static int getRangeIndex(int ordinal) {
+        for (int i = 0; i < RANGE_ORDINALS.length; i++) if (RANGE_ORDINALS[i] == ordinal) return i;
+        throw new IllegalArgumentException("Not indexed: " + ordinal);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getStringBytes(int ordinal) {
+        return stringBytes[getBloomIndex(ordinal)];
+    }
+
+    public long getStringNullCount(int ordinal) {
+        return stringNulls[getBloomIndex(ordinal)];
+    }
+
+    public long getSum(int ordinal) {
+        return sums[getRangeIndex(ordinal)];
+    }
+
+    public boolean isCurrent(File shard) {
+        return shard.length() == length && shard.lastModified() == lastModified;
+    }
+
+    public boolean mayMatch(TupleDomain<ColumnHandle> constraint) {
+        if (constraint.isNone()) return false;
+        Map<ColumnHandle, Domain> domains = constraint.getDomains().orElseThrow();
+        for (Map.Entry<ColumnHandle, Domain> e : domains.entrySet()) {
+            if (!mayMatch(((ResurfaceColumnHandle) e.getKey()).getOrdinalPosition(), e.getValue())) return false;
+        }
+        return true;
+    }
+
+    public boolean mayMatch(List<BitmapMask> masks) {
+        for (BitmapMask mask : masks) {
+            if (!mask.test(bitmaps[mask.getOrdinalPosition() - BITMAP_FIRST])) return false;  // no row in this shard has any of the bits
+        }
+        return true;
+    }
+
+    private boolean mayMatch(int ordinal, Domain domain) {
+        for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+            if (RANGE_ORDINALS[i] == ordinal) {
+                boolean hasNulls = nonNulls[i] < rowCount;
+                Type type = domain.getType();  // bigint or integer, both held as longs
+                ValueSet values = nonNulls[i] == 0 ? ValueSet.none(type) : ValueSet.ofRanges(Range.range(type, mins[i], true, maxs[i], true));
+                return !domain.intersect(Domain.create(values, hasNulls)).isNone();
+            }
+        }
+        for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+            if (BLOOM_ORDINALS[i] == ordinal) {
+                if (domain.isNullAllowed() && stringNulls[i] > 0) return true;
+                if (!domain.getValues().isDiscreteSet()) return true;
+                for (Object value : domain.getValues().getDiscreteSet()) {
+                    if (blooms[i].mightContain((Slice) value)) return true;
+                }
+                return false;
+            }
+        }
+        if (ordinal >= BITMAP_FIRST && ordinal <= BITMAP_LAST) {
+            if (!domain.getValues().isDiscreteSet()) return true;
+            long mask = bitmaps[ordinal - BITMAP_FIRST];
+            for (Object value : domain.getValues().getDiscreteSet()) {
+                if (((Long) value & ~mask) == 0) return true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public static ShardIndex read(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != VERSION) return null;
+            ShardIndex index = new ShardIndex(in.readLong(), in.readLong());
+            index.rowCount = in.readLong();
+            for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+                index.nonNulls[i] = in.readLong();
+                index.mins[i] = in.readLong();
+                index.maxs[i] = in.readLong();
+                index.sums[i] = in.readLong();
+            }
+            for (int i = 0; i < index.bitmaps.length; i++) index.bitmaps[i] = in.readLong();
+            for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+                index.stringNulls[i] = in.readLong();
+                index.stringBytes[i] = in.readLong();
+                index.blooms[i] = BloomFilter.readFrom(in, SliceFunnel.INSTANCE);
+            }
+            return index;
+        }
+    }
+
+    public void write(File f) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(VERSION);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeLong(rowCount);
+            for (int i = 0; i < RANGE_ORDINALS.length; i++) {
+                out.writeLong(nonNulls[i]);
+                out.writeLong(mins[i]);
+                out.writeLong(maxs[i]);
+                out.writeLong(sums[i]);
+            }
+            for (long bitmap : bitmaps) out.writeLong(bitmap);
+            for (int i = 0; i < BLOOM_ORDINALS.length; i++) {
+                out.writeLong(stringNulls[i]);
+                out.writeLong(stringBytes[i]);
+                blooms[i].writeTo(out);
+            }
+        }
+    }
+
+    private static BloomFilter<Slice> newBloomFilter() {
+        return BloomFilter.create(SliceFunnel.INSTANCE, BLOOM_EXPECTED_INSERTIONS, BLOOM_FPP);
+    }
+
+    private enum SliceFunnel implements Funnel<Slice> {
+        INSTANCE;
+
+        @Override
+        public void funnel(Slice from, PrimitiveSink into) {
+            into.putBytes(from.byteArray(), from.byteArrayOffset(), from.length());
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.trino.spi.Page;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.predicate.TupleDomain;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+
+public class ShardPageCache {
+
+    public ShardPageCache(long maxBytes, ResurfaceStats stats) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> weigh(entry.pages()))
+                .removalListener(this::removed)
+                .build();
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final long maxBytes;
+    private final ResurfaceStats stats;
+
+    // the weight limit is split across the cache's segments, so anything larger would be evicted right away
+    public boolean fits(long bytes) {
+        return bytes <= maxBytes / 4;
+    }
+
+    public List<Page> get(File shard, List<Integer> columns, ResurfaceTableHandle handle) {
+        Entry entry = lookup(Key.of(shard, columns, handle));
+        return entry == null ? null : entry.pages();
+    }
+
+    public void put(File shard, List<Integer> columns, ResurfaceTableHandle handle, List<Page> pages) {
+        store(Key.of(shard, columns, handle), new Entry(shard.length(), null, List.copyOf(pages)));
+    }
+
+    // unfiltered pages for the open shard up to offset, kept under its name alone since it grows between reads
+    public Entry getTail(File shard, List<Integer> columns, List<BitmapMask> masks) {
+        Entry entry = lookup(Key.ofTail(shard, columns, masks));
+        if (entry == null || entry.offset() > shard.length() || !Objects.equals(entry.fileKey(), getFileKey(shard))) return null;
+        return entry;
+    }
+
+    public void putTail(File shard, List<Integer> columns, List<BitmapMask> masks, long offset, List<Page> pages) {
+        store(Key.ofTail(shard, columns, masks), new Entry(offset, getFileKey(shard), List.copyOf(pages)));
+    }
+
+    // tells a recreated shard apart from one that was only appended to
+    private static Object getFileKey(File shard) {
+        try {
+            return Files.readAttributes(shard.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Entry lookup(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            stats.recordCacheMiss();
+        } else {
+            stats.recordCacheHit();
+        }
+        return entry;
+    }
+
+    private void store(Key key, Entry entry) {
+        int bytes = weigh(entry.pages());
+        if (!fits(bytes)) return;
+        stats.recordCacheBytes(bytes);
+        cache.put(key, entry);
+    }
+
+    private void removed(RemovalNotification<Key, Entry> notification) {
+        stats.recordCacheBytes(-weigh(notification.getValue().pages()));
+        if (notification.wasEvicted()) stats.recordCacheEviction();
+    }
+
+    public static int weigh(List<Page> pages) {
+        long bytes = 0;
+        for (Page page : pages) bytes += page.getRetainedSizeInBytes();
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    public record Entry(long offset, Object fileKey, List<Page> pages) {
+    }
+
+    // closed shards are matched by length & mtime too, so a rewritten shard never serves stale pages, while the open shard's
+    // pages hold every row, so any constraint can be applied to them
+    private record Key(String path, long length, long lastModified, List<Integer> columns,
+                       TupleDomain<ColumnHandle> constraint, List<BitmapMask> masks) {
+
+        static Key of(File shard, List<Integer> columns, ResurfaceTableHandle handle) {
+            return new Key(shard.getPath(), shard.length(), shard.lastModified(), columns, handle.getConstraint(), handle.getMasks());
+        }
+
+        static Key ofTail(File shard, List<Integer> columns, List<BitmapMask> masks) {
+            return new Key(shard.getPath(), -1, -1, columns, TupleDomain.all(), masks);
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
+import it.unimi.dsi.fastutil.io.MeasurableInputStream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+public class ShardPrefetcher implements Iterator<File>, Closeable {
+
+    private static final int MAX_SHARDS = 16;
+
+    // budget is shared by every prefetcher on the worker, and is held for each buffer until it's dropped
+    public ShardPrefetcher(Iterator<File> files, Predicate<File> wanted, ExecutorService executor, Semaphore budget, String openFile) {
+        this.budget = budget;
+        this.executor = executor;
+        this.files = files;
+        this.openFile = openFile;
+        this.wanted = wanted;
+    }
+
+    private final Semaphore budget;
+    private Prefetch current;
+    private final ExecutorService executor;
+    private final Iterator<File> files;
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private long heldBytes;
+    private final String openFile;
+    private final Predicate<File> wanted;
+    private final ArrayDeque<Prefetch> window = new ArrayDeque<>();
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !window.isEmpty();
+    }
+
+    @Override
+    public File next() {
+        fill();
+        if (window.isEmpty()) throw new NoSuchElementException();
+        release(current);
+        current = window.removeFirst();
+        fill();
+        return current.file;
+    }
+
+    // bytes of every buffer this prefetcher holds, whether filling, being read, or kept for reuse
+    public long getRetainedBytes() {
+        return heldBytes;
+    }
+
+    // returns the prefetched contents of the file last returned by next, or null to read it from disk
+    public MeasurableInputStream getStream() throws IOException {
+        if (current == null || current.data == null) return null;
+        try {
+            int length = current.data.get();
+            return new FastByteArrayInputStream(current.buffer, 0, length);
+        } catch (ExecutionException e) {
+            return null;  // shard may have been removed or rewritten, so let the caller open it normally
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (current != null && current.data != null) discard(current);
+        current = null;
+        for (Prefetch p : window) if (p.data != null) discard(p);
+        window.clear();
+        while (!free.isEmpty()) drop(free.removeFirst());
+    }
+
+    // shards the reader would skip anyway, and the open shard that's still growing, are left to be read from disk
+    private void fill() {
+        while (files.hasNext() && window.size() < MAX_SHARDS) {
+            File f = files.next();
+            long length = f.length();
+            boolean prefetch = !f.getName().equals(openFile) && length <= Integer.MAX_VALUE - 8 && wanted.test(f);
+            byte[] buffer = prefetch ? allocate((int) length) : null;
+            window.addLast(buffer == null ? new Prefetch(f, null, null) : new Prefetch(f, buffer, executor.submit(() -> read(f, buffer))));
+        }
+    }
+
+    // returns null once the worker's budget is spent
+    private byte[] allocate(int length) {
+        for (Iterator<byte[]> i = free.iterator(); i.hasNext(); ) {
+            byte[] buffer = i.next();
+            if (buffer.length >= length) {
+                i.remove();
+                return buffer;
+            }
+        }
+        while (!budget.tryAcquire(length)) {
+            if (free.isEmpty()) return null;
+            drop(free.removeFirst());  // too small to reuse, so give their bytes back first
+        }
+        heldBytes += length;
+        return new byte[length];
+    }
+
+    private void drop(byte[] buffer) {
+        heldBytes -= buffer.length;
+        budget.release(buffer.length);
+    }
+
+    private void discard(Prefetch p) {
+        p.data.cancel(true);
+        drop(p.buffer);
+    }
+
+    private static int read(File f, byte[] buffer) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            return in.readNBytes(buffer, 0, buffer.length);
+        }
+    }
+
+    private void release(Prefetch p) {
+        if (p == null || p.data == null) return;
+        if (p.data.isDone() && !p.data.isCancelled()) {
+            free.addLast(p.buffer);  // only finished reads give back their buffer, so no worker can still write into it
+            if (free.size() > 2) drop(free.removeFirst());
+        } else {
+            discard(p);
+        }
+    }
+
+    private record Prefetch(File file, byte[] buffer, Future<Integer> data) {
+    }
+
+}
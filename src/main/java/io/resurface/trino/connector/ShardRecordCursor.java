@@ -14,7 +14,7 @@ import static io.airlift.slice.Slices.utf8Slice;
 
 public class ShardRecordCursor implements RecordCursor {
 
-    public ShardRecordCursor(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, String node_id, int slab) {
+    public ShardRecordCursor(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, ResurfaceSplit split) {
         this.column_names = new String[columns.size()];
         this.column_ordinal_positions = new int[columns.size()];
         this.column_types = new Type[columns.size()];
@@ -23,15 +23,18 @@ public class ShardRecordCursor implements RecordCursor {
             this.column_ordinal_positions[i] = columns.get(i).getOrdinalPosition();
             this.column_types[i] = columns.get(i).getColumnType();
         }
-        this.node_id = node_id;
-        this.files = tables.getFiles(handle, slab).iterator();
+        this.node_id = split.getNodeId();
+        long start = System.nanoTime();
+        this.files = tables.getFiles(handle, split).iterator();
         this.open_file = tables.getOpenFile();
+        this.listing_nanos = System.nanoTime() - start;
     }
 
     private final String[] column_names;
     private final int[] column_ordinal_positions;
     private final Type[] column_types;
     private final Iterator<File> files;
+    private final long listing_nanos;
     private final String node_id;
     private final String open_file;
     private File shard_file;
@@ -85,7 +88,7 @@ public class ShardRecordCursor implements RecordCursor {
 
     @Override
     public long getReadTimeNanos() {
-        return 0;
+        return listing_nanos;
     }
 
     @Override
@@ -0,0 +1,171 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.INTERVAL_MILLIS;
+
+public class ShardRollup {
+
+    public static final String SUFFIX = ".r1m";
+
+    private static final int VERSION = 1;
+
+    private static final long MINUTE_MILLIS = 60_000;
+
+    // interval_millis is null when zero, so those rows land in their own group
+    public static final long NULL_MINUTE = Long.MIN_VALUE;
+
+    // totals kept per group, indexed by these positions
+    public static final int COUNT = 0;
+    public static final int RESPONSE_TIME_COUNT = 1;
+    public static final int RESPONSE_TIME_SUM = 2;
+    public static final int SIZE_TOTAL_SUM = 3;
+    private static final int TOTALS = 4;
+
+    private static final int HOST = 6;
+    private static final int RESPONSE_CODE = 17;
+    private static final int RESPONSE_TIME_MILLIS = 21;
+    private static final int SIZE_TOTAL_BYTES = 30;
+
+    private ShardRollup(long length, long lastModified) {
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    private final Map<Group, long[]> groups = new HashMap<>();
+    private final long lastModified;
+    private final long length;
+
+    public static ShardRollup create(File shard) {
+        return new ShardRollup(shard.length(), shard.lastModified());
+    }
+
+    public static ShardRollup empty() {
+        return new ShardRollup(0, 0);
+    }
+
+    public void add(MessageReader reader) {
+        int interval = INTERVAL_MILLIS.getOrdinalPosition();
+        long minute = reader.isNull(interval) ? NULL_MINUTE : Math.floorDiv(reader.getLong(interval), MINUTE_MILLIS) * MINUTE_MILLIS;
+        Slice host = reader.isNull(HOST) ? null : reader.getSlice(HOST);
+        Slice response_code = reader.isNull(RESPONSE_CODE) ? null : reader.getSlice(RESPONSE_CODE);
+
+        Group group = new Group(minute, host, response_code);
+        long[] totals = groups.get(group);
+        if (totals == null) {
+            totals = new long[TOTALS];
+            groups.put(new Group(minute, copy(host), copy(response_code)), totals);  // slices may be views over the decode buffer
+        }
+        totals[COUNT]++;
+        if (!reader.isNull(RESPONSE_TIME_MILLIS)) {
+            totals[RESPONSE_TIME_COUNT]++;
+            totals[RESPONSE_TIME_SUM] += reader.getLong(RESPONSE_TIME_MILLIS);
+        }
+        totals[SIZE_TOTAL_SUM] += reader.getLong(SIZE_TOTAL_BYTES);
+    }
+
+    public void addAll(ShardRollup other) {
+        for (Map.Entry<Group, long[]> e : other.groups.entrySet()) {
+            long[] totals = groups.computeIfAbsent(e.getKey(), k -> new long[TOTALS]);
+            for (int i = 0; i < TOTALS; i++) totals[i] += e.getValue()[i];
+        }
+    }
+
+    private static Slice copy(Slice slice) {
+        return slice == null ? null : slice.copy();
+    }
+
+    public List<Group> getGroups() {
+        return new ArrayList<>(groups.keySet());
+    }
+
+    public long getTotal(Group group, int total) {
+        return groups.get(group)[total];
+    }
+
+    public boolean isCurrent(File shard) {
+        return shard.length() == length && shard.lastModified() == lastModified;
+    }
+
+    public static ShardRollup read(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != VERSION) return null;
+            ShardRollup rollup = new ShardRollup(in.readLong(), in.readLong());
+            int size = in.readInt();
+            long[] minutes = readLongs(in, size);
+            Slice[] hosts = readSlices(in, size);
+            Slice[] response_codes = readSlices(in, size);
+            long[][] totals = new long[TOTALS][];
+            for (int i = 0; i < TOTALS; i++) totals[i] = readLongs(in, size);
+            for (int g = 0; g < size; g++) {
+                long[] t = new long[TOTALS];
+                for (int i = 0; i < TOTALS; i++) t[i] = totals[i][g];
+                rollup.groups.put(new Group(minutes[g], hosts[g], response_codes[g]), t);
+            }
+            return rollup;
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in, int size) throws IOException {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) result[i] = in.readLong();
+        return result;
+    }
+
+    private static Slice[] readSlices(DataInputStream in, int size) throws IOException {
+        Slice[] dictionary = new Slice[in.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            dictionary[i] = Slices.wrappedBuffer(bytes);
+        }
+        Slice[] result = new Slice[size];
+        for (int i = 0; i < size; i++) {
+            int id = in.readInt();
+            result[i] = id < 0 ? null : dictionary[id];
+        }
+        return result;
+    }
+
+    // written column by column, with hosts and response codes dictionary encoded
+    public void write(File f) throws IOException {
+        List<Map.Entry<Group, long[]>> entries = new ArrayList<>(groups.entrySet());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(VERSION);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeInt(entries.size());
+            for (Map.Entry<Group, long[]> e : entries) out.writeLong(e.getKey().minute());
+            writeSlices(out, entries.stream().map(e -> e.getKey().host()).toList());
+            writeSlices(out, entries.stream().map(e -> e.getKey().responseCode()).toList());
+            for (int i = 0; i < TOTALS; i++) {
+                for (Map.Entry<Group, long[]> e : entries) out.writeLong(e.getValue()[i]);
+            }
+        }
+    }
+
+    private static void writeSlices(DataOutputStream out, List<Slice> values) throws IOException {
+        Map<Slice, Integer> dictionary = new LinkedHashMap<>();
+        for (Slice value : values) if (value != null) dictionary.putIfAbsent(value, dictionary.size());
+        out.writeInt(dictionary.size());
+        for (Slice value : dictionary.keySet()) {
+            out.writeInt(value.length());
+            out.write(value.byteArray(), value.byteArrayOffset(), value.length());
+        }
+        for (Slice value : values) out.writeInt(value == null ? -1 : dictionary.get(value));
+    }
+
+    public record Group(long minute, Slice host, Slice responseCode) {
+    }
+
+}
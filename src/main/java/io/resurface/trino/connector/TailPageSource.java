@@ -0,0 +1,128 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.Page;
+import io.trino.spi.connector.ConnectorPageSource;
+import io.trino.spi.connector.DynamicFilter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+// scans like MessagePageSource, but when nothing matched it waits and rescans only what was appended since, until rows
+// turn up or the wait runs out. it's the only split of its query and covers every slab, so the handle's limit bounds the
+// whole result, and no other split is left polling once rows are returned
+public class TailPageSource implements ConnectorPageSource {
+
+    private static final long POLL_MILLIS = 100;
+
+    public TailPageSource(ResurfaceTables tables, List<ResurfaceColumnHandle> columns, ResurfaceTableHandle handle, DynamicFilter dynamicFilter) {
+        this.columns = columns;
+        this.deadline = System.nanoTime() + MILLISECONDS.toNanos(handle.getTailWaitMillis().orElse(0));
+        this.dynamicFilter = dynamicFilter;
+        this.handle = handle;
+        this.tables = tables;
+        this.source = startPass();
+    }
+
+    private CompletableFuture<?> blocked = NOT_BLOCKED;
+    private final List<ResurfaceColumnHandle> columns;
+    private long completed_bytes;
+    private final long deadline;
+    private final DynamicFilter dynamicFilter;
+    private boolean finished;
+    private final ResurfaceTableHandle handle;
+    private long read_nanos;
+    private final Set<String> read_shards = new HashSet<>();
+    private long returned;
+    private MessagePageSource source;
+    private final ResurfaceTables tables;
+    private String tail_file;
+    private long tail_offset;
+
+    // closed shards read to the end are left out of later passes, and the open shard resumes from its last checkpoint
+    private MessagePageSource startPass() {
+        List<File> files = new ArrayList<>();
+        for (int slab = 1; slab <= tables.getMessagesSlabs(); slab++) {
+            files.addAll(tables.getFiles(handle, slab).stream().filter(f -> !read_shards.contains(f.getName())).toList());
+        }
+        MessageReader reader = new MessageReader(tables, handle, files, dynamicFilter, tail_file, tail_offset);
+        reader.setShardListener(f -> {
+            if (f.getName().equals(reader.getOpenFile())) {
+                tail_file = f.getName();
+                tail_offset = reader.getCheckpointOffset();
+            } else {
+                read_shards.add(f.getName());
+            }
+        });
+        return new MessagePageSource(tables, columns, handle, reader);
+    }
+
+    private void endPass() {
+        completed_bytes += source.getCompletedBytes();
+        read_nanos += source.getReadTimeNanos();
+        source.close();
+        source = null;
+    }
+
+    @Override
+    public void close() {
+        if (source != null) endPass();
+        blocked.cancel(false);
+    }
+
+    @Override
+    public long getCompletedBytes() {
+        return source == null ? completed_bytes : completed_bytes + source.getCompletedBytes();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return source == null ? 0 : source.getMemoryUsage();
+    }
+
+    @Override
+    public Page getNextPage() {
+        if (finished || !blocked.isDone()) return null;
+        if (source == null) source = startPass();
+
+        Page page = source.getNextPage();
+        if (page != null) {
+            returned += page.getPositionCount();
+            return page;
+        }
+        if (!source.isFinished()) return null;
+        endPass();
+
+        long wait = NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (returned > 0 || wait <= 0) {
+            finished = true;
+        } else {
+            blocked = CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(Math.min(POLL_MILLIS, wait), MILLISECONDS));
+        }
+        return null;
+    }
+
+    @Override
+    public long getReadTimeNanos() {
+        return source == null ? read_nanos : read_nanos + source.getReadTimeNanos();
+    }
+
+    @Override
+    public CompletableFuture<?> isBlocked() {
+        return blocked;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+}
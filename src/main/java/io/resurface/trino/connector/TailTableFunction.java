@@ -0,0 +1,72 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.trino.spi.TrinoException;
+import io.trino.spi.connector.ConnectorAccessControl;
+import io.trino.spi.connector.ConnectorSession;
+import io.trino.spi.connector.ConnectorTransactionHandle;
+import io.trino.spi.function.table.AbstractConnectorTableFunction;
+import io.trino.spi.function.table.Argument;
+import io.trino.spi.function.table.ConnectorTableFunctionHandle;
+import io.trino.spi.function.table.Descriptor;
+import io.trino.spi.function.table.ScalarArgument;
+import io.trino.spi.function.table.ScalarArgumentSpecification;
+import io.trino.spi.function.table.TableFunctionAnalysis;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.resurface.trino.connector.ResurfaceMetadata.SCHEMA_DATA;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.function.table.ReturnTypeSpecification.GenericTable.GENERIC_TABLE;
+import static io.trino.spi.type.BigintType.BIGINT;
+
+// SELECT * FROM TABLE(data.tail(since => ..., max_wait => ..., max_rows => ...)) returns the messages newer than since,
+// waiting up to max_wait millis for some to arrive, so clients can poll again with the newest interval_millis they saw
+public class TailTableFunction extends AbstractConnectorTableFunction {
+
+    public static final String FUNCTION_NAME = "tail";
+
+    private static final String MAX_ROWS = "MAX_ROWS";
+    private static final String MAX_WAIT = "MAX_WAIT";
+    private static final String SINCE = "SINCE";
+
+    public TailTableFunction() {
+        super(SCHEMA_DATA, FUNCTION_NAME, List.of(
+                ScalarArgumentSpecification.builder().name(SINCE).type(BIGINT).defaultValue(null).build(),
+                ScalarArgumentSpecification.builder().name(MAX_WAIT).type(BIGINT).defaultValue(1000L).build(),
+                ScalarArgumentSpecification.builder().name(MAX_ROWS).type(BIGINT).defaultValue(10000L).build()
+        ), GENERIC_TABLE);
+    }
+
+    @Override
+    public TableFunctionAnalysis analyze(ConnectorSession session, ConnectorTransactionHandle transaction, Map<String, Argument> arguments,
+                                         ConnectorAccessControl accessControl) {
+        Long since = (Long) ((ScalarArgument) arguments.get(SINCE)).getValue();
+        long max_wait = getLong(arguments, MAX_WAIT);
+        long max_rows = getLong(arguments, MAX_ROWS);
+        if (max_rows < 1) throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "max_rows must be positive: " + max_rows);
+
+        List<Descriptor.Field> fields = ResurfaceTables.MessageTable.COLUMNS.stream()
+                .map(column -> new Descriptor.Field(column.getName(), Optional.of(column.getType())))
+                .toList();
+        return TableFunctionAnalysis.builder()
+                .returnedType(new Descriptor(fields))
+                .handle(new TailFunctionHandle(since == null ? System.currentTimeMillis() : since, max_wait, max_rows))
+                .build();
+    }
+
+    private static long getLong(Map<String, Argument> arguments, String name) {
+        Long value = (Long) ((ScalarArgument) arguments.get(name)).getValue();
+        if (value == null || value < 0) throw new TrinoException(INVALID_FUNCTION_ARGUMENT, name.toLowerCase() + " must not be null or negative: " + value);
+        return value;
+    }
+
+    public record TailFunctionHandle(@JsonProperty("since") long since, @JsonProperty("maxWait") long maxWait,
+                                     @JsonProperty("maxRows") long maxRows) implements ConnectorTableFunctionHandle {
+    }
+
+}
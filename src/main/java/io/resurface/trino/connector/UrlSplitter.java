@@ -0,0 +1,109 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+
+public final class UrlSplitter {
+
+    // splits plain http(s) urls in place, or returns null for anything java.net.URL might treat differently
+    public static UrlSplitter split(Slice url) {
+        int length = url.length();
+        if (length < 7 || url.getByte(0) != 'h' || url.getByte(1) != 't' || url.getByte(2) != 't' || url.getByte(3) != 'p') return null;
+        int protocol_end = url.getByte(4) == 's' ? 5 : 4;
+        if (length < protocol_end + 3 || url.getByte(protocol_end) != ':') return null;
+        if (url.getByte(protocol_end + 1) != '/' || url.getByte(protocol_end + 2) != '/') return null;
+        if (url.getByte(length - 1) <= ' ' && url.getByte(length - 1) >= 0) return null;  // trimmed by java.net.URL
+
+        // find first slash, first question mark and first hash, rejecting anything beyond ascii
+        int host_start = protocol_end + 3;
+        int limit = length;
+        int query = -1;
+        int slash = -1;
+        for (int i = host_start; i < length; i++) {
+            byte b = url.getByte(i);
+            if (b < 0) return null;
+            if (b == '#') {
+                limit = i;
+                break;
+            } else if (b == '?') {
+                if (query < 0) query = i;
+            } else if (b == '/') {
+                if (slash < 0 && query < 0) slash = i;
+            }
+        }
+        int authority_end = slash >= 0 ? slash : query >= 0 ? query : limit;
+        if (authority_end == host_start) return null;  // empty authority, like file-style urls
+
+        // accept only simple hosts with optional numeric port
+        int host_end = authority_end;
+        for (int i = host_start; i < authority_end; i++) {
+            byte b = url.getByte(i);
+            if (b == ':') {
+                if (host_end != authority_end || authority_end - i - 1 > 9) return null;
+                host_end = i;
+            } else if (host_end != authority_end) {
+                if (b < '0' || b > '9') return null;
+            } else if (!isHostChar(b)) {
+                return null;
+            }
+        }
+
+        // dot segments are normalized by java.net.URL
+        int path_end = query >= 0 ? query : limit;
+        for (int i = authority_end; i < path_end - 1; i++) {
+            if (url.getByte(i) == '/' && url.getByte(i + 1) == '.') return null;
+        }
+
+        return new UrlSplitter(url, protocol_end, host_start, host_end, authority_end, path_end, query, limit);
+    }
+
+    private static boolean isHostChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '.' || b == '-' || b == '_';
+    }
+
+    private UrlSplitter(Slice url, int protocol_end, int host_start, int host_end, int path_start, int path_end, int query, int limit) {
+        this.host_end = host_end;
+        this.host_start = host_start;
+        this.limit = limit;
+        this.path_end = path_end;
+        this.path_start = path_start;
+        this.protocol_end = protocol_end;
+        this.query = query;
+        this.url = url;
+    }
+
+    private final int host_end;
+    private final int host_start;
+    private final int limit;
+    private final int path_end;
+    private final int path_start;
+    private final int protocol_end;
+    private final int query;
+    private final Slice url;
+
+    public Slice getHost() {
+        return url.slice(host_start, host_end - host_start);
+    }
+
+    public Slice getPath() {
+        return url.slice(path_start, path_end - path_start);
+    }
+
+    public Long getPort() {
+        int port_start = host_end + 1;
+        if (port_start >= path_start) return null;
+        long port = 0;
+        for (int i = port_start; i < path_start; i++) port = port * 10 + (url.getByte(i) - '0');
+        return port;
+    }
+
+    public Slice getProtocol() {
+        return url.slice(0, protocol_end);
+    }
+
+    public Slice getQuery() {
+        return query < 0 ? url.slice(0, 0) : url.slice(query + 1, limit - query - 1);
+    }
+
+}
@@ -0,0 +1,88 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.type.MapType;
+import io.trino.spi.type.TypeOperators;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.trino.spi.type.DoubleType.DOUBLE;
+import static io.trino.spi.type.VarcharType.VARCHAR;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkHistosum {
+
+    private static final int ROWS = 10_000;
+
+    private static final MapType MAP_TYPE = new MapType(VARCHAR, DOUBLE, new TypeOperators());
+
+    @Param({"10", "1000"})
+    private int keys;
+
+    private Slice[] input;
+    private HistosumState state;
+
+    @Setup
+    public void setup() {
+        // keys are views into one shared buffer, like values read from a block
+        StringBuilder buffer = new StringBuilder();
+        int[] offsets = new int[keys + 1];
+        for (int i = 0; i < keys; i++) {
+            buffer.append("host").append(i).append(".example.com");
+            offsets[i + 1] = buffer.length();
+        }
+        Slice shared = Slices.utf8Slice(buffer.toString());
+        input = new Slice[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            int k = i % keys;
+            input[i] = shared.slice(offsets[k], offsets[k + 1] - offsets[k]);
+        }
+        state = accumulate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public HistosumState input() {
+        return accumulate();
+    }
+
+    @Benchmark
+    public HistosumState combine() {
+        HistosumState result = new HistosumStateFactory.SingleHistosumState();
+        Histosum.combine(result, state);
+        Histosum.combine(result, state);
+        return result;
+    }
+
+    @Benchmark
+    public Block output() {
+        BlockBuilder out = MAP_TYPE.createBlockBuilder(null, 1);
+        Histosum.output(state, out);
+        return out.build();
+    }
+
+    private HistosumState accumulate() {
+        HistosumState result = new HistosumStateFactory.SingleHistosumState();
+        for (int i = 0; i < ROWS; i++) Histosum.input(result, input[i], i);
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkHistosum.class.getSimpleName()).build()).run();
+    }
+
+}
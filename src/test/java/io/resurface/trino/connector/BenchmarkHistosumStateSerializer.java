@@ -0,0 +1,75 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.airlift.json.ObjectMapperProvider;
+import io.trino.spi.block.BlockBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+import static io.trino.spi.type.VarcharType.VARCHAR;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkHistosumStateSerializer {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperProvider().get();
+    private static final HistosumStateSerializer SERIALIZER = new HistosumStateSerializer();
+
+    @Param({"10", "100", "1000"})
+    private int keys;
+
+    private HistosumState state;
+
+    @Setup
+    public void setup() {
+        state = new HistosumStateFactory.SingleHistosumState();
+        for (int i = 0; i < keys; i++) state.getMap().add(utf8Slice("host" + i + ".example.com"), i * 1.5);
+    }
+
+    @Benchmark
+    public HistosumState binaryRoundTrip() {
+        BlockBuilder out = VARBINARY.createBlockBuilder(null, 1);
+        SERIALIZER.serialize(state, out);
+        HistosumState result = new HistosumStateFactory.SingleHistosumState();
+        SERIALIZER.deserialize(out.build(), 0, result);
+        return result;
+    }
+
+    // the intermediate format used before: a JSON object written as varchar and parsed back into a map
+    @Benchmark
+    public HistosumState jsonRoundTrip() throws IOException {
+        HistosumMap map = state.getMap();
+        ObjectNode node = OBJECT_MAPPER.createObjectNode();
+        for (int i = 0; i < map.size(); i++) node.put(map.getKey(i).toStringUtf8(), map.getValue(i));
+        BlockBuilder out = VARCHAR.createBlockBuilder(null, 1);
+        VARCHAR.writeSlice(out, utf8Slice(OBJECT_MAPPER.writeValueAsString(node)));
+
+        byte[] json = VARCHAR.getSlice(out.build(), 0).getBytes();
+        LinkedHashMap<String, Double> values = OBJECT_MAPPER.readValue(json, new TypeReference<LinkedHashMap<String, Double>>() {});
+        HistosumState result = new HistosumStateFactory.SingleHistosumState();
+        for (Map.Entry<String, Double> e : values.entrySet()) result.getMap().add(utf8Slice(e.getKey()), e.getValue());
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkHistosumStateSerializer.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,129 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.HostAddress;
+import io.trino.spi.Page;
+import io.trino.spi.connector.RecordCursor;
+import io.trino.spi.type.Type;
+import io.trino.testing.TestingNodeManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.getSchemaTableName;
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.IntegerType.INTEGER;
+import static io.trino.testing.TestingConnectorSession.SESSION;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BenchmarkMessageScan {
+
+    // the synthetic shard is the two-message test shard repeated this many times
+    @Param({"1000", "10000"})
+    private int copies;
+
+    @Param({"all", "narrow"})
+    private String projection;
+
+    private List<ResurfaceColumnHandle> columns;
+    private Path dir;
+    private ResurfaceTableHandle handle;
+    private ResurfaceSplit split;
+    private ResurfaceTables tables;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("benchmark");
+        byte[] shard = Files.readAllBytes(Path.of(getClass().getClassLoader().getResource("compressed-files/message.1.blkc").getPath()));
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dir.resolve("message.1.blkc")))) {
+            for (int i = 0; i < copies; i++) out.write(shard);
+        }
+
+        tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        handle = new ResurfaceTableHandle(getSchemaTableName());
+        Map<String, ResurfaceColumnHandle> all = new ResurfaceMetadata(new TestingNodeManager(), tables).getColumnHandles(SESSION, handle)
+                .values().stream().map(column -> (ResurfaceColumnHandle) column)
+                .collect(Collectors.toMap(ResurfaceColumnHandle::getColumnName, column -> column));
+        columns = projection.equals("all")
+                ? all.values().stream().sorted((a, b) -> a.getOrdinalPosition() - b.getOrdinalPosition()).collect(Collectors.toList())
+                : List.of(all.get("interval_millis"), all.get("host"), all.get("response_code"));
+        split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "benchmark", 1);
+    }
+
+    @TearDown
+    public void teardown() {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.toFile().delete();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long bytes;
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            rows = 0;
+        }
+
+    }
+
+    @Benchmark
+    public void pageSource(Counters counters) {
+        try (MessagePageSource source = new MessagePageSource(tables, columns, handle, split)) {
+            while (!source.isFinished()) {
+                Page page = source.getNextPage();
+                if (page != null) counters.rows += page.getPositionCount();
+            }
+            counters.bytes += source.getCompletedBytes();
+        }
+    }
+
+    @Benchmark
+    public void recordCursor(Counters counters, Blackhole blackhole) {
+        try (RecordCursor cursor = new MessageRecordCursor(tables, columns, handle, split)) {
+            while (cursor.advanceNextPosition()) {
+                for (int i = 0; i < columns.size(); i++) {
+                    Type type = cursor.getType(i);
+                    if (cursor.isNull(i)) {
+                        blackhole.consume(null);
+                    } else if (type.equals(BIGINT) || type.equals(INTEGER)) {
+                        blackhole.consume(cursor.getLong(i));
+                    } else {
+                        blackhole.consume(cursor.getSlice(i));
+                    }
+                }
+                counters.rows++;
+            }
+            counters.bytes += cursor.getCompletedBytes();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkMessageScan.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,105 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.slice.Slices.utf8Slice;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkResurfaceFunctions {
+
+    private static final Slice[] HOSTS = {
+            utf8Slice("localhost"),
+            utf8Slice("example.com"),
+            utf8Slice("api.example.com"),
+            utf8Slice("eu.west.api.example.com"),
+            utf8Slice("a.b.c.d.e.f.example.co.uk"),
+    };
+
+    private static final Slice[] URLS = {
+            utf8Slice("http://localhost/index.html"),
+            utf8Slice("https://api.example.com/v1/users?id=42&sort=asc"),
+            utf8Slice("http://www.example.com:8080/app/login"),
+            utf8Slice("https://cdn.example.com/assets/js/app.min.js?v=1.2.3"),
+            utf8Slice("/relative/path/only"),
+            utf8Slice("not a url at all"),
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void flattenDomainName(Blackhole blackhole) {
+        for (Slice host : HOSTS) blackhole.consume(ResurfaceFunctions.flattenDomainName(host));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void flattenDomainNameLevels(Blackhole blackhole) {
+        for (Slice host : HOSTS) blackhole.consume(ResurfaceFunctions.flattenDomainName(host, 2));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void flattenDomainNameString(Blackhole blackhole) {
+        for (Slice host : HOSTS) blackhole.consume(flattenDomainNameString(host));
+    }
+
+    // previous implementation, kept as a baseline
+    private static Slice flattenDomainNameString(Slice domain) {
+        String s = domain.toStringUtf8();
+        int x = s.lastIndexOf('.');
+        if (x < 0) return domain;
+        x = s.lastIndexOf('.', x - 1);
+        if (x < 0) return domain;
+        x = s.lastIndexOf('.', x - 1);
+        if (x < 0) return domain;
+        return utf8Slice(s.substring(x + 1));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void urlParseHost(Blackhole blackhole) {
+        for (Slice url : URLS) blackhole.consume(ResurfaceFunctions.urlParseHost(url));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void urlParsePath(Blackhole blackhole) {
+        for (Slice url : URLS) blackhole.consume(ResurfaceFunctions.urlParsePath(url));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void urlParsePort(Blackhole blackhole) {
+        for (Slice url : URLS) blackhole.consume(ResurfaceFunctions.urlParsePort(url));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void urlParseProtocol(Blackhole blackhole) {
+        for (Slice url : URLS) blackhole.consume(ResurfaceFunctions.urlParseProtocol(url));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void urlParseQuery(Blackhole blackhole) {
+        for (Slice url : URLS) blackhole.consume(ResurfaceFunctions.urlParseQuery(url));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkResurfaceFunctions.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,34 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.*;
+
+public class TestDataLocation {
+
+    @Test
+    public void testListingCache() throws IOException {
+        Path dir = Files.createTempDirectory("location");
+        Files.createFile(dir.resolve("message.1.blkc"));
+        assertTrue(dir.toFile().setLastModified(System.currentTimeMillis() - 10000));
+
+        ResurfaceStats stats = new ResurfaceStats();
+        DataLocation location = new DataLocation(dir.toString(), stats);
+        assertEquals(location.files().size(), 1);
+        assertEquals(stats.getListingMisses(), 1);
+        assertSame(location.files(), location.files());
+        assertEquals(stats.getListingHits(), 2);
+
+        // adding a file bumps the directory mtime, so the next listing sees it
+        Files.createFile(dir.resolve("message.2.blkc"));
+        assertEquals(location.files().size(), 2);
+        assertEquals(stats.getListingMisses(), 2);
+    }
+
+}
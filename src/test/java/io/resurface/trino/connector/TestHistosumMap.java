@@ -0,0 +1,51 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.airlift.slice.Slice;
+import org.testng.annotations.Test;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.*;
+
+public class TestHistosumMap {
+
+    @Test
+    public void testAddAndGrow() {
+        HistosumMap m = new HistosumMap();
+        long empty = m.getRetainedSizeInBytes();
+        for (int i = 0; i < 1000; i++) m.add(utf8Slice("key" + (i % 100)), 1.0);
+
+        assertEquals(m.size(), 100);
+        assertEquals(m.getKey(0).toStringUtf8(), "key0");
+        assertEquals(m.getKey(99).toStringUtf8(), "key99");
+        for (int i = 0; i < m.size(); i++) assertEquals(m.getValue(i), 10.0);
+        assertTrue(m.getRetainedSizeInBytes() > empty);
+    }
+
+    @Test
+    public void testAddAll() {
+        HistosumMap m1 = new HistosumMap();
+        m1.add(utf8Slice("a"), 1.5);
+        m1.add(utf8Slice("b"), 2.0);
+        HistosumMap m2 = new HistosumMap();
+        m2.add(utf8Slice("b"), 3.0);
+        m2.add(utf8Slice("c"), 4.0);
+
+        m1.addAll(m2);
+        assertEquals(m1.size(), 3);
+        assertEquals(m1.getValue(0), 1.5);
+        assertEquals(m1.getValue(1), 5.0);
+        assertEquals(m1.getValue(2), 4.0);
+    }
+
+    @Test
+    public void testKeysAreCopied() {
+        Slice shared = utf8Slice("xxhostyy");
+        HistosumMap m = new HistosumMap();
+        m.add(shared.slice(2, 4), 1.0);
+        assertEquals(m.getKey(0).toStringUtf8(), "host");
+        assertEquals(m.getKey(0).length(), m.getKey(0).byteArray().length);
+    }
+
+}
@@ -0,0 +1,38 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.block.BlockBuilder;
+import org.testng.annotations.Test;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+import static org.testng.Assert.*;
+
+public class TestHistosumStateSerializer {
+
+    @Test
+    public void testRoundTrip() {
+        HistosumStateSerializer serializer = new HistosumStateSerializer();
+        HistosumState state = new HistosumStateFactory.SingleHistosumState();
+        state.getMap().add(utf8Slice("host 😀"), 1.5);
+        state.getMap().add(utf8Slice(""), -2.0);
+        state.getMap().add(utf8Slice("other"), 3.25);
+
+        BlockBuilder out = VARBINARY.createBlockBuilder(null, 2);
+        serializer.serialize(state, out);
+        state.setMap(null);
+        serializer.serialize(state, out);
+
+        HistosumState result = new HistosumStateFactory.SingleHistosumState();
+        serializer.deserialize(out.build(), 0, result);
+        assertEquals(result.getMap().size(), 3);
+        assertEquals(result.getMap().getKey(0).toStringUtf8(), "host 😀");
+        assertEquals(result.getMap().getValue(0), 1.5);
+        assertEquals(result.getMap().getKey(1).toStringUtf8(), "");
+        assertEquals(result.getMap().getValue(1), -2.0);
+        assertEquals(result.getMap().getKey(2).toStringUtf8(), "other");
+        assertEquals(result.getMap().getValue(2), 3.25);
+    }
+
+}
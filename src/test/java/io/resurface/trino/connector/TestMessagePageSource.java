@@ -0,0 +1,598 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.trino.spi.HostAddress;
+import io.trino.spi.Page;
+import io.trino.spi.connector.AggregateFunction;
+import io.trino.spi.connector.AggregationApplicationResult;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.connector.ConnectorSplitSource;
+import io.trino.spi.connector.Constraint;
+import io.trino.spi.connector.ConstraintApplicationResult;
+import io.trino.spi.connector.ConnectorTableHandle;
+import io.trino.spi.connector.DynamicFilter;
+import io.trino.spi.connector.SortItem;
+import io.trino.spi.connector.SortOrder;
+import io.trino.spi.expression.Call;
+import io.trino.spi.expression.ConnectorExpression;
+import io.trino.spi.expression.Constant;
+import io.trino.spi.expression.FunctionName;
+import io.trino.spi.expression.Variable;
+import io.trino.spi.function.table.Argument;
+import io.trino.spi.function.table.ScalarArgument;
+import io.trino.spi.function.table.TableFunctionAnalysis;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.Range;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.predicate.ValueSet;
+import io.trino.testing.TestingNodeManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.COUNT_ALL;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.INTERVAL_MILLIS;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SIZE_TOTAL_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.SUM_SIZE_TOTAL_BYTES;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.getSchemaTableName;
+import static io.trino.spi.expression.StandardFunctions.AND_FUNCTION_NAME;
+import static io.trino.spi.expression.StandardFunctions.NOT_EQUAL_OPERATOR_FUNCTION_NAME;
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.BooleanType.BOOLEAN;
+import static io.trino.spi.type.IntegerType.INTEGER;
+import static io.trino.spi.type.VarcharType.VARCHAR;
+import static io.trino.spi.type.VarcharType.createUnboundedVarcharType;
+import static io.trino.testing.TestingConnectorSession.SESSION;
+import static org.testng.Assert.*;
+
+public class TestMessagePageSource {
+
+    private Path dir;
+
+    // shards are copied per test, so sidecars written by one test are never seen by another
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("shards");
+        Files.copy(Path.of(getClass().getClassLoader().getResource("compressed-files/message.1.blkc").getPath()), dir.resolve("message.1.blkc"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException {
+        deleteRecursively(dir, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testCompressedFiles() {
+        assertMessages(new ResurfaceConfig().setMessagesDir(dir.toString()));
+    }
+
+    @Test
+    public void testMappedFiles() {
+        assertMessages(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesMmap(true));
+    }
+
+    @Test
+    public void testPrefetchedFiles() throws IOException {
+        assertMessages(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesPrefetchThreads(2));
+        assertMessages(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesPrefetchThreads(2).setMessagesPrefetchBytes(1));
+
+        // buffers come out of the worker's budget, which is all given back once the scan is closed
+        long budget = 64L * 1024 * 1024;
+        long length = Files.size(dir.resolve("message.1.blkc"));
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1).setMessagesPrefetchThreads(2));
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (MessagePageSource source = new MessagePageSource(tables, ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0)), tableHandle, split)) {
+            assertEquals(tables.getMessagesPrefetchBudget().availablePermits(), budget - length);
+            assertTrue(source.getMemoryUsage() >= length);
+            assertEquals(source.getNextPage().getPositionCount(), 2);
+        }
+        assertEquals(tables.getMessagesPrefetchBudget().availablePermits(), budget);
+
+        // shards the dynamic filter rules out are never read ahead
+        try (MessageReader reader = new MessageReader(tables, tableHandle, split, new TestingDynamicFilter(TupleDomain.none()))) {
+            assertEquals(tables.getMessagesPrefetchBudget().availablePermits(), budget);
+            assertFalse(reader.next());
+        }
+        tables.shutdown();
+    }
+
+    @Test
+    public void testReadBuffers() {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()));
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        List<ResurfaceColumnHandle> columnHandles = ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0));
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // each scan borrows the pooled buffer and gives it back on close
+        byte[] buffer = tables.borrowReadBuffer();
+        tables.returnReadBuffer(buffer);
+        for (int pass = 0; pass < 2; pass++) {
+            try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+                Page page = source.getNextPage();
+                assertNotNull(page);
+                assertEquals(page.getPositionCount(), 2);
+                assertEquals(VARCHAR.getSlice(page.getBlock(0), 1).toStringUtf8(), "id2");
+            }
+            assertSame(tables.borrowReadBuffer(), buffer);
+            tables.returnReadBuffer(buffer);
+        }
+    }
+
+    @Test
+    public void testCache() {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesCacheBytes(64L * 1024 * 1024));
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        List<ResurfaceColumnHandle> columnHandles = ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0), INTERVAL_MILLIS);
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // second pass is served from the pages cached by the first, which count as its memory until returned
+        for (int pass = 0; pass < 2; pass++) {
+            try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+                long memory = source.getMemoryUsage();
+                Page page = source.getNextPage();
+                assertNotNull(page);
+                if (pass == 1) assertEquals(memory - source.getMemoryUsage(), page.getRetainedSizeInBytes());
+                assertEquals(page.getPositionCount(), 2);
+                assertEquals(VARCHAR.getSlice(page.getBlock(0), 0).toStringUtf8(), "id 😀");
+                assertEquals(VARCHAR.getSlice(page.getBlock(0), 1).toStringUtf8(), "id2");
+                assertEquals(BIGINT.getLong(page.getBlock(1), 1), 123456);
+                assertNull(source.getNextPage());
+                assertTrue(source.isFinished());
+            }
+        }
+        assertEquals(tables.getStats().getCacheMisses(), 1);
+        assertEquals(tables.getStats().getCacheHits(), 1);
+        assertTrue(tables.getStats().getCacheBytes() > 0);
+        assertEquals(tables.getStats().getScanRows(), 2);
+
+        // other projections and limited scans don't share those pages
+        try (MessagePageSource source = new MessagePageSource(tables, columnHandles.subList(0, 1), tableHandle, split)) {
+            assertEquals(source.getNextPage().getPositionCount(), 2);
+        }
+        ResurfaceTableHandle limited = new ResurfaceTableHandle(getSchemaTableName(), TupleDomain.all(), List.of(), OptionalLong.of(1), OptionalLong.empty(), false);
+        try (MessagePageSource source = new MessagePageSource(tables, columnHandles, limited, split)) {
+            assertEquals(source.getNextPage().getPositionCount(), 1);
+        }
+        assertEquals(tables.getStats().getCacheMisses(), 2);
+        assertEquals(tables.getStats().getScanRows(), 5);
+    }
+
+    @Test
+    public void testIncrementalTail() throws IOException {
+        Path shard = dir.resolve("message.1.blkc");
+        Files.writeString(dir.resolve("open_shard"), "message.1.blkc");
+        ResurfaceConfig config = new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1)
+                .setMessagesCacheBytes(64L * 1024 * 1024).setMessagesIncrementalTail(true);
+        ResurfaceTables tables = new ResurfaceTables(config);
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        List<ResurfaceColumnHandle> columnHandles = ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0));
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // later scans only decode what follows the checkpoint, which a partly written message doesn't move
+        byte[] torn = Arrays.copyOf(Files.readAllBytes(shard), 16);
+        for (int pass = 0; pass < 3; pass++) {
+            if (pass == 2) Files.write(shard, torn, StandardOpenOption.APPEND);
+            try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+                List<String> ids = new ArrayList<>();
+                for (Page page = source.getNextPage(); page != null; page = source.getNextPage()) {
+                    for (int i = 0; i < page.getPositionCount(); i++) ids.add(VARCHAR.getSlice(page.getBlock(0), i).toStringUtf8());
+                }
+                assertEquals(ids, List.of("id 😀", "id2"));
+                assertTrue(source.isFinished());
+            }
+            assertEquals(tables.getStats().getScanRows(), 2);
+        }
+        assertEquals(tables.getStats().getCacheHits(), 2);
+    }
+
+    @Test
+    public void testIncrementalTailConstraints() throws IOException {
+        Files.writeString(dir.resolve("open_shard"), "message.1.blkc");
+        ResurfaceConfig config = new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1)
+                .setMessagesCacheBytes(64L * 1024 * 1024).setMessagesIncrementalTail(true);
+        ResurfaceTables tables = new ResurfaceTables(config);
+        List<ResurfaceColumnHandle> columnHandles = ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0));
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // the open shard's pages are cached unfiltered, so scans with a different interval_millis bound share them
+        long[] since = {123455, 123456, 123455};
+        for (int pass = 0; pass < since.length; pass++) {
+            Domain newer = Domain.create(ValueSet.ofRanges(Range.greaterThan(BIGINT, since[pass])), false);
+            ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName(), TupleDomain.withColumnDomains(ImmutableMap.of(INTERVAL_MILLIS, newer)));
+            try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+                List<String> ids = new ArrayList<>();
+                for (Page page = source.getNextPage(); page != null; page = source.getNextPage()) {
+                    assertEquals(page.getChannelCount(), 1);
+                    for (int i = 0; i < page.getPositionCount(); i++) ids.add(VARCHAR.getSlice(page.getBlock(0), i).toStringUtf8());
+                }
+                assertEquals(ids, pass == 1 ? List.of() : List.of("id 😀", "id2"));
+                assertTrue(source.isFinished());
+            }
+        }
+        assertEquals(tables.getStats().getCacheHits(), 2);
+        assertEquals(tables.getStats().getScanRows(), 2);
+    }
+
+    @Test
+    public void testTail() throws Exception {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+
+        // messages newer than since come back without waiting
+        ResurfaceTableHandle newer = applyTail(metadata, 123455, 60000, 10000);
+        assertEquals(newer.getLimit(), OptionalLong.of(10000));
+        assertEquals(newer.getTailWaitMillis(), OptionalLong.of(60000));
+        assertTrue(metadata.applyFilter(SESSION, newer, Constraint.alwaysTrue()).isEmpty());
+        try (TailPageSource source = new TailPageSource(tables, ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0)), newer, DynamicFilter.EMPTY)) {
+            assertEquals(readTail(source), List.of("id 😀", "id2"));
+        }
+
+        // with nothing newer, the scan gives up once max_wait has passed
+        long start = System.nanoTime();
+        try (TailPageSource source = new TailPageSource(tables, ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0)), applyTail(metadata, 123456, 300, 10000), DynamicFilter.EMPTY)) {
+            assertEquals(readTail(source), List.of());
+        }
+        assertTrue(System.nanoTime() - start >= 300_000_000L);
+
+        // messages appended to the open shard while waiting are picked up by the next poll
+        Path open = Files.createDirectory(dir.resolve("open"));
+        Path shard = Files.createFile(open.resolve("message.1.blkc"));
+        Files.writeString(open.resolve("open_shard"), "message.1.blkc");
+        ResurfaceTables appended = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(open.toString()).setMessagesSlabs(1));
+        ResurfaceTableHandle waiting = applyTail(new ResurfaceMetadata(new TestingNodeManager(), appended), 0, 60000, 10000);
+        try (TailPageSource source = new TailPageSource(appended, ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0)), waiting, DynamicFilter.EMPTY)) {
+            assertNull(source.getNextPage());
+            assertFalse(source.isFinished());
+            Files.write(shard, Files.readAllBytes(dir.resolve("message.1.blkc")), StandardOpenOption.APPEND);
+            assertEquals(readTail(source), List.of("id 😀", "id2"));
+        }
+        assertEquals(appended.getStats().getScanRows(), 2);
+    }
+
+    @Test
+    public void testTailAcrossSlabs() throws Exception {
+        Files.copy(dir.resolve("message.1.blkc"), dir.resolve("message.2.blkc"));
+        ResurfaceConfig config = new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(2);
+        ResurfaceTables tables = new ResurfaceTables(config);
+        TestingNodeManager nodeManager = new TestingNodeManager();
+        ResurfaceMetadata metadata = new ResurfaceMetadata(nodeManager, tables);
+
+        // one split covers every slab, so max_rows bounds the whole result and nothing waits once rows are found
+        ResurfaceTableHandle handle = applyTail(metadata, 123455, 60000, 3);
+        ConnectorSplitSource splits = new ResurfaceSplitManager(config, nodeManager, tables)
+                .getSplits(ResurfaceTransactionHandle.INSTANCE, SESSION, handle, DynamicFilter.EMPTY, Constraint.alwaysTrue());
+        assertEquals(splits.getNextBatch(10).get().getSplits().size(), 1);
+        assertTrue(splits.isFinished());
+
+        long start = System.nanoTime();
+        try (TailPageSource source = new TailPageSource(tables, ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0)), handle, DynamicFilter.EMPTY)) {
+            assertEquals(readTail(source), List.of("id 😀", "id2", "id 😀"));
+        }
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    private static ResurfaceTableHandle applyTail(ResurfaceMetadata metadata, long since, long maxWait, long maxRows) {
+        Map<String, Argument> arguments = ImmutableMap.of(
+                "SINCE", new ScalarArgument(BIGINT, since),
+                "MAX_WAIT", new ScalarArgument(BIGINT, maxWait),
+                "MAX_ROWS", new ScalarArgument(BIGINT, maxRows));
+        TableFunctionAnalysis analysis = new TailTableFunction().analyze(SESSION, ResurfaceTransactionHandle.INSTANCE, arguments, null);
+        return (ResurfaceTableHandle) metadata.applyTableFunction(SESSION, analysis.getHandle()).orElseThrow().getTableHandle();
+    }
+
+    private static List<String> readTail(TailPageSource source) throws Exception {
+        List<String> ids = new ArrayList<>();
+        while (!source.isFinished()) {
+            source.isBlocked().get();
+            Page page = source.getNextPage();
+            if (page == null) continue;
+            for (int i = 0; i < page.getPositionCount(); i++) ids.add(VARCHAR.getSlice(page.getBlock(0), i).toStringUtf8());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testLimit() {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()));
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName(), TupleDomain.all(), List.of(), OptionalLong.of(1), OptionalLong.empty(), false);
+        List<ResurfaceColumnHandle> columnHandles = ImmutableList.of(new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0));
+
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertEquals(page.getPositionCount(), 1);
+            assertEquals(VARCHAR.getSlice(page.getBlock(0), 0).toStringUtf8(), "id 😀");
+            assertNull(source.getNextPage());
+            assertTrue(source.isFinished());
+        }
+    }
+
+    @Test
+    public void testNewest() {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        Map<String, ColumnHandle> assignments = ImmutableMap.of("interval_millis", INTERVAL_MILLIS);
+
+        List<SortItem> ascending = ImmutableList.of(new SortItem("interval_millis", SortOrder.ASC_NULLS_LAST));
+        assertTrue(metadata.applyTopN(SESSION, tableHandle, 1, ascending, assignments).isEmpty());
+        List<SortItem> descending = ImmutableList.of(new SortItem("interval_millis", SortOrder.DESC_NULLS_LAST));
+        ResurfaceTableHandle topN = (ResurfaceTableHandle) metadata.applyTopN(SESSION, tableHandle, 1, descending, assignments).orElseThrow().getHandle();
+        assertEquals(topN.getNewest(), OptionalLong.of(1));
+
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (MessagePageSource source = new MessagePageSource(tables, ImmutableList.of(INTERVAL_MILLIS), topN, split)) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertTrue(page.getPositionCount() >= 1);
+            assertEquals(BIGINT.getLong(page.getBlock(0), 0), 123456);
+            assertNull(source.getNextPage());
+        }
+    }
+
+    @Test
+    public void testAggregation() throws IOException {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        Map<String, ColumnHandle> assignments = ImmutableMap.of("size_total_bytes", SIZE_TOTAL_BYTES);
+
+        List<AggregateFunction> aggregates = ImmutableList.of(
+                new AggregateFunction("count", BIGINT, ImmutableList.of(), ImmutableList.of(), false, Optional.empty()),
+                new AggregateFunction("sum", BIGINT, ImmutableList.of(new Variable("size_total_bytes", BIGINT)), ImmutableList.of(), false, Optional.empty()));
+        Optional<AggregationApplicationResult<ConnectorTableHandle>> result = metadata.applyAggregation(SESSION, tableHandle, aggregates, assignments, ImmutableList.of(ImmutableList.of()));
+        assertTrue(result.isPresent());
+        ResurfaceTableHandle aggregated = (ResurfaceTableHandle) result.get().getHandle();
+        assertTrue(aggregated.isAggregated());
+        assertEquals(result.get().getAssignments().size(), 2);
+        assertTrue(metadata.applyAggregation(SESSION, tableHandle, aggregates, assignments, ImmutableList.of(ImmutableList.of(SIZE_TOTAL_BYTES))).isEmpty());
+
+        // first pass scans the unindexed shard, second pass is answered from the index it left behind
+        long[] expected = null;
+        for (int pass = 0; pass < 2; pass++) {
+            try (MessageAggregatePageSource source = new MessageAggregatePageSource(tables, ImmutableList.of(COUNT_ALL, SUM_SIZE_TOTAL_BYTES), aggregated)) {
+                Page page = source.getNextPage();
+                assertNotNull(page);
+                assertEquals(page.getPositionCount(), 1);
+                long[] actual = {BIGINT.getLong(page.getBlock(0), 0), BIGINT.getLong(page.getBlock(1), 0)};
+                assertEquals(actual[0], 2);
+                if (expected != null) assertEquals(actual, expected);
+                expected = actual;
+                assertNull(source.getNextPage());
+            }
+            assertNotNull(tables.getIndex(dir.resolve("message.1.blkc").toFile()));
+        }
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        ResurfaceColumnHandle id = new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0);
+        ResurfaceColumnHandle host = new ResurfaceColumnHandle("host", createUnboundedVarcharType(), 6);
+
+        // cheap columns are enforced by the scan, everything else is left for the engine
+        TupleDomain<ColumnHandle> summary = TupleDomain.withColumnDomains(ImmutableMap.of(
+                INTERVAL_MILLIS, Domain.singleValue(BIGINT, 123456L),
+                host, Domain.singleValue(VARCHAR, utf8Slice("host 😀"))));
+        ConstraintApplicationResult<ConnectorTableHandle> result = metadata.applyFilter(SESSION, tableHandle, new Constraint(summary)).orElseThrow();
+        assertEquals(result.getRemainingFilter(), TupleDomain.withColumnDomains(ImmutableMap.of(host, Domain.singleValue(VARCHAR, utf8Slice("host 😀")))));
+
+        ResurfaceTableHandle filtered = (ResurfaceTableHandle) result.getHandle();
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // rows are skipped inside the scan, before the shard has an index to prune with
+        TupleDomain<ColumnHandle> nulls = TupleDomain.withColumnDomains(ImmutableMap.of(INTERVAL_MILLIS, Domain.onlyNull(BIGINT)));
+        try (MessageReader reader = new MessageReader(tables, new ResurfaceTableHandle(getSchemaTableName(), nulls), split)) {
+            assertFalse(reader.next());
+            assertEquals(reader.getSkippedRows(), 2);
+        }
+        assertNotNull(tables.getIndex(dir.resolve("message.1.blkc").toFile()));
+
+        try (MessagePageSource source = new MessagePageSource(tables, ImmutableList.of(id, INTERVAL_MILLIS), filtered, split)) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertEquals(page.getPositionCount(), 2);
+            assertEquals(VARCHAR.getSlice(page.getBlock(0), 0).toStringUtf8(), "id 😀");
+            assertEquals(BIGINT.getLong(page.getBlock(1), 1), 123456);
+            assertNull(source.getNextPage());
+        }
+    }
+
+    @Test
+    public void testBitmapMasks() throws IOException {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        ResurfaceColumnHandle injection = new ResurfaceColumnHandle("bitmap_attack_injection", BIGINT, 43);
+        ResurfaceColumnHandle url = new ResurfaceColumnHandle("request_url", createUnboundedVarcharType(), 14);
+        Map<String, ColumnHandle> assignments = ImmutableMap.of("bitmap_attack_injection", injection, "request_url", url);
+
+        // bitwise_and(bitmap_attack_injection, 8) <> 0 is pushed down, the other conjunct stays with the engine
+        ConnectorExpression other = new Call(BOOLEAN, NOT_EQUAL_OPERATOR_FUNCTION_NAME, ImmutableList.of(
+                new Variable("request_url", createUnboundedVarcharType()), new Constant(utf8Slice("x"), createUnboundedVarcharType())));
+        ConnectorExpression expression = new Call(BOOLEAN, AND_FUNCTION_NAME, ImmutableList.of(bitwiseAnd(8), other));
+        ConstraintApplicationResult<ConnectorTableHandle> result = metadata.applyFilter(SESSION, tableHandle, new Constraint(TupleDomain.all(), expression, assignments)).orElseThrow();
+        assertEquals(result.getRemainingExpression().orElseThrow(), other);
+        ResurfaceTableHandle masked = (ResurfaceTableHandle) result.getHandle();
+        assertEquals(masked.getMasks(), ImmutableList.of(new BitmapMask(43, 8)));
+        assertTrue(metadata.applyFilter(SESSION, masked, new Constraint(TupleDomain.all(), bitwiseAnd(8), assignments)).isEmpty());
+
+        // rows without the bits are skipped, then the shard is skipped once indexed
+        ResurfaceTableHandle unmatched = (ResurfaceTableHandle) metadata.applyFilter(SESSION, tableHandle,
+                new Constraint(TupleDomain.all(), bitwiseAnd(4), assignments)).orElseThrow().getHandle();
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (MessageReader reader = new MessageReader(tables, unmatched, split)) {
+            assertFalse(reader.next());
+            assertEquals(reader.getSkippedRows(), 2);
+        }
+        assertEquals(tables.getFiles(unmatched, 1).size(), 0);
+        assertEquals(tables.getFiles(masked, 1).size(), 1);
+
+        try (MessagePageSource source = new MessagePageSource(tables, ImmutableList.of(injection), masked, split)) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertEquals(page.getPositionCount(), 2);
+            assertEquals(BIGINT.getLong(page.getBlock(0), 0), 43);
+        }
+    }
+
+    private static ConnectorExpression bitwiseAnd(long mask) {
+        ConnectorExpression and = new Call(BIGINT, new FunctionName("bitwise_and"), ImmutableList.of(new Variable("bitmap_attack_injection", BIGINT), new Constant(mask, BIGINT)));
+        return new Call(BOOLEAN, NOT_EQUAL_OPERATOR_FUNCTION_NAME, ImmutableList.of(and, new Constant(0L, BIGINT)));
+    }
+
+    @Test
+    public void testDynamicFilter() throws IOException {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        ResurfaceColumnHandle id = new ResurfaceColumnHandle("id", createUnboundedVarcharType(), 0);
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+
+        // rows are filtered inside the scan, while the shard index gets built
+        TupleDomain<ColumnHandle> ids = TupleDomain.withColumnDomains(ImmutableMap.of(id, Domain.singleValue(VARCHAR, utf8Slice("id2"))));
+        try (MessagePageSource source = new MessagePageSource(tables, ImmutableList.of(id), tableHandle, split, new TestingDynamicFilter(ids))) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertEquals(page.getPositionCount(), 1);
+            assertEquals(VARCHAR.getSlice(page.getBlock(0), 0).toStringUtf8(), "id2");
+            assertNull(source.getNextPage());
+        }
+        assertNotNull(tables.getIndex(dir.resolve("message.1.blkc").toFile()));
+
+        // shards are skipped once their index rules them out
+        TupleDomain<ColumnHandle> intervals = TupleDomain.withColumnDomains(ImmutableMap.of(INTERVAL_MILLIS, Domain.singleValue(BIGINT, 42L)));
+        try (MessageReader reader = new MessageReader(tables, tableHandle, split, new TestingDynamicFilter(intervals))) {
+            assertFalse(reader.next());
+            assertEquals(reader.getSkippedShards(), 1);
+        }
+        try (MessageReader reader = new MessageReader(tables, tableHandle, split, new TestingDynamicFilter(TupleDomain.none()))) {
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testSplitSourceWaitsForDynamicFilter() throws Exception {
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        CompletableFuture<?> blocked = new CompletableFuture<>();
+        TestingDynamicFilter dynamicFilter = new TestingDynamicFilter(TupleDomain.all(), blocked);
+
+        MessageSplitSource source = new MessageSplitSource(ImmutableList.of(split), dynamicFilter, 60_000);
+        CompletableFuture<ConnectorSplitSource.ConnectorSplitBatch> waiting = source.getNextBatch(10);
+        assertFalse(waiting.isDone());
+        blocked.complete(null);
+        assertTrue(waiting.get().getSplits().isEmpty());
+        assertEquals(source.getNextBatch(10).get().getSplits(), ImmutableList.of(split));
+        assertTrue(source.isFinished());
+
+        // splits are released once the wait is over, even if the filter never arrives
+        source = new MessageSplitSource(ImmutableList.of(split), new TestingDynamicFilter(TupleDomain.all(), new CompletableFuture<>()), 10);
+        while (!source.isFinished()) source.getNextBatch(10).get();
+    }
+
+    private static class TestingDynamicFilter implements DynamicFilter {
+
+        TestingDynamicFilter(TupleDomain<ColumnHandle> predicate) {
+            this(predicate, NOT_BLOCKED);
+        }
+
+        TestingDynamicFilter(TupleDomain<ColumnHandle> predicate, CompletableFuture<?> blocked) {
+            this.blocked = blocked;
+            this.predicate = predicate;
+        }
+
+        private final CompletableFuture<?> blocked;
+        private final TupleDomain<ColumnHandle> predicate;
+
+        @Override
+        public Set<ColumnHandle> getColumnsCovered() {
+            return predicate.getDomains().map(Map::keySet).orElse(ImmutableSet.of());
+        }
+
+        @Override
+        public CompletableFuture<?> isBlocked() {
+            return blocked;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return blocked.isDone();
+        }
+
+        @Override
+        public boolean isAwaitable() {
+            return !blocked.isDone();
+        }
+
+        @Override
+        public TupleDomain<ColumnHandle> getCurrentPredicate() {
+            return predicate;
+        }
+
+    }
+
+    private void assertMessages(ResurfaceConfig config) {
+        ResurfaceTables tables = new ResurfaceTables(config);
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+
+        ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
+        List<ResurfaceColumnHandle> columnHandles = metadata.getColumnHandles(SESSION, tableHandle)
+                .values().stream().map(column -> (ResurfaceColumnHandle) column)
+                .collect(Collectors.toList());
+
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (MessagePageSource source = new MessagePageSource(tables, columnHandles, tableHandle, split)) {
+            Page page = source.getNextPage();
+            assertNotNull(page);
+            assertEquals(page.getChannelCount(), columnHandles.size());
+            assertEquals(page.getPositionCount(), 2);
+
+            assertEquals(VARCHAR.getSlice(page.getBlock(0), 0).toStringUtf8(), "id 😀");                // 0
+            assertEquals(INTEGER.getLong(page.getBlock(5), 0), 27);                                      // 5 (v3)
+            assertEquals(VARCHAR.getSlice(page.getBlock(6), 0).toStringUtf8(), "host 😀");              // 6
+            assertEquals(BIGINT.getLong(page.getBlock(7), 0), 123456);                                   // 7
+            assertEquals(VARCHAR.getSlice(page.getBlock(17), 0).toStringUtf8(), "response_code 😀");    // 17
+            assertEquals(BIGINT.getLong(page.getBlock(21), 0), 1234);                                    // 21
+            assertTrue(page.getBlock(29).isNull(0));                                                     // 29 (v3.1)
+            assertEquals(BIGINT.getLong(page.getBlock(30), 0), 68);                                      // 30 (v3.1)
+            assertEquals(BIGINT.getLong(page.getBlock(43), 0), 43);                                      // 43 (v3.1)
+            assertEquals(VARCHAR.getSlice(page.getBlock(49), 0).toStringUtf8(), "message.1.blkc");      // 49 (v3.5)
+            assertEquals(INTEGER.getLong(page.getBlock(56), 0), 21);                                     // 56 (v3.6)
+            assertEquals(VARCHAR.getSlice(page.getBlock(0), 1).toStringUtf8(), "id2");
+
+            assertNull(source.getNextPage());
+            assertTrue(source.isFinished());
+            assertTrue(source.getCompletedBytes() > 0);
+            assertTrue(source.getReadTimeNanos() > 0);
+        }
+        assertEquals(tables.getStats().getScanRows(), 2);
+        assertEquals(tables.getStats().getScanShards(), 1);
+        assertTrue(tables.getStats().getScanBytes() > 0);
+        tables.shutdown();
+    }
+
+}
@@ -3,6 +3,7 @@
 package io.resurface.trino.connector;
 
 import com.google.common.collect.ImmutableMap;
+import jakarta.validation.constraints.AssertTrue;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
@@ -17,8 +18,16 @@ public class TestResurfaceConfig {
     @Test
     public void testDefaults() {
         assertRecordedDefaults(recordDefaults(ResurfaceConfig.class)
+                .setMessagesCacheBytes(0)
                 .setMessagesDir(null)
+                .setMessagesDynamicFilterWaitMillis(1000)
+                .setMessagesIncrementalTail(false)
+                .setMessagesMmap(false)
+                .setMessagesPageSource(true)
+                .setMessagesPrefetchBytes(64L * 1024 * 1024)
+                .setMessagesPrefetchThreads(0)
                 .setMessagesSlabs(0)
+                .setMessagesSplitBytes(256L * 1024 * 1024)
                 .setViewsDir(null));
     }
 
@@ -28,16 +37,39 @@ public class TestResurfaceConfig {
         Path tmpfile2 = Files.createTempFile(null, null);
 
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+                .put("resurface.messages.cache-bytes", String.valueOf(2048))
                 .put("resurface.messages.dir", tmpfile.toString())
+                .put("resurface.messages.dynamic-filter-wait-millis", "250")
+                .put("resurface.messages.incremental-tail", "true")
+                .put("resurface.messages.mmap", "true")
+                .put("resurface.messages.page-source", "false")
+                .put("resurface.messages.prefetch-bytes", String.valueOf(4096))
+                .put("resurface.messages.prefetch-threads", "4")
                 .put("resurface.messages.slabs", String.valueOf(42))
+                .put("resurface.messages.split-bytes", String.valueOf(1024))
                 .put("resurface.views.dir", tmpfile2.toString())
                 .build();
 
         ResurfaceConfig expected = new ResurfaceConfig()
+                .setMessagesCacheBytes(2048)
                 .setMessagesDir(tmpfile.toString())
+                .setMessagesDynamicFilterWaitMillis(250)
+                .setMessagesIncrementalTail(true)
+                .setMessagesMmap(true)
+                .setMessagesPageSource(false)
+                .setMessagesPrefetchBytes(4096)
+                .setMessagesPrefetchThreads(4)
                 .setMessagesSlabs(42)
+                .setMessagesSplitBytes(1024)
                 .setViewsDir(tmpfile2.toString());
         assertFullMapping(properties, expected);
     }
 
+    @Test
+    public void testIncrementalTailRequiresCache() {
+        assertFailsValidation(new ResurfaceConfig().setMessagesIncrementalTail(true), "messagesIncrementalTailValid",
+                "resurface.messages.incremental-tail requires resurface.messages.cache-bytes to be positive", AssertTrue.class);
+        assertValidates(new ResurfaceConfig().setMessagesIncrementalTail(true).setMessagesCacheBytes(2048));
+    }
+
 }
@@ -2,13 +2,21 @@
 
 package io.resurface.trino.connector;
 
+import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import org.testng.annotations.Test;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
 import java.util.Objects;
 
 import static io.resurface.trino.connector.ResurfaceFunctions.*;
 import static org.junit.Assert.assertNull;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
 
 public class TestResurfaceFunctions {
 
@@ -46,6 +54,33 @@ public class TestResurfaceFunctions {
         assertEquals(Objects.requireNonNull(flattenDomainName(slice("..."))).toStringAscii(), "..");
         assertEquals(Objects.requireNonNull(flattenDomainName(slice("...."))).toStringAscii(), "..");
         assertEquals(Objects.requireNonNull(flattenDomainName(slice("....."))).toStringAscii(), (".."));
+
+        // multibyte characters
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("a.bü.ç.日本"))).toStringUtf8(), "bü.ç.日本");
+    }
+
+    @Test
+    public void testFlatteningDomainNamesToLevels() {
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("blah.docs.foo.io"), 1)).toStringAscii(), "io");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("blah.docs.foo.io"), 2)).toStringAscii(), "foo.io");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("blah.docs.foo.io"), 3)).toStringAscii(), "docs.foo.io");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("blah.docs.foo.io"), 4)).toStringAscii(), "blah.docs.foo.io");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("blah.docs.foo.io"), Long.MAX_VALUE)).toStringAscii(), "blah.docs.foo.io");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("localhost"), 1)).toStringAscii(), "localhost");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice("foo.io."), 1)).toStringAscii(), "");
+        assertEquals(Objects.requireNonNull(flattenDomainName(slice(""), 2)).toStringAscii(), "");
+
+        // same as default number of levels
+        for (String s : List.of("z", "y.z", "x.y.z", "v.w.x.y.z", "docs..foo.io", "blah.docs.foo.io.", "..", "....")) {
+            assertEquals(flattenDomainName(slice(s), 3), flattenDomainName(slice(s)));
+        }
+
+        // results are views over the input
+        Slice domain = slice("blah.docs.foo.io");
+        assertSame(Objects.requireNonNull(flattenDomainName(domain, 2)).byteArray(), domain.byteArray());
+
+        assertThrows(TrinoException.class, () -> flattenDomainName(slice("foo.io"), 0));
+        assertThrows(TrinoException.class, () -> flattenDomainName(slice("foo.io"), -1));
     }
 
     @Test
@@ -81,4 +116,38 @@ public class TestResurfaceFunctions {
         assertEquals(Objects.requireNonNull(urlParsePath(slice("http://foo/bar bar/zoom"))).toStringAscii(), "/bar bar/zoom");
     }
 
+    @Test
+    public void testParsingURLsLikeJavaNetURL() {
+        List<String> corpus = List.of(
+                "http://foo/bar", "https://foo/bar", "http://foo:8080/bar", "https://foo:443?x", "http://foo:80", "http://foo:/x",
+                "http://foo:0/", "http://foo:99999/", "http://foo:1234567890/", "http://foo:8a/", "http://foo:+80/", "http://foo::80/",
+                "http:/", "http://", "http:///", "http:////x", "http:foo", "https:/foo", "httpx://foo", "HTTP://foo/", "Https://foo/",
+                "http://foo?a/b", "http://foo#a?b", "http://foo/x#y", "http://foo/x?y#z", "http://foo/bar?1=1&b=2#frag",
+                "http://foo/./a", "http://foo/a/..", "http://foo/a/../b", "http://foo/a/.", "http://foo/.hidden", "http://foo/a?b/./c",
+                "http://u@foo/", "http://u:p@foo:80/", "http://[::1]:80/", "http://fo%6f/", "http://foo.:80/x", "http://my_host-1.io/",
+                " http://foo/", "http://foo/ ", "http://foo/bar bar", "http://foo/é", "http://föö/", "http://foo/?q=é",
+                "https://api.example.com/v1/users?id=42&sort=asc", "https://cdn.example.com/assets/app.min.js?v=1.2.3",
+                "/relative/path/only", "not a url at all", ""
+        );
+        for (String s : corpus) {
+            URL u;
+            try {
+                u = new URL(s);
+            } catch (MalformedURLException e) {
+                u = null;
+            }
+            Slice url = slice(s);
+            assertEquals(urlParseHost(url), u == null ? null : slice(u.getHost()), s);
+            assertEquals(urlParsePath(url), u == null ? null : slice(u.getPath()), s);
+            assertEquals(urlParsePort(url), u == null || u.getPort() < 0 ? null : Long.valueOf(u.getPort()), s);
+            assertEquals(urlParseProtocol(url), u == null ? null : slice(u.getProtocol()), s);
+            assertEquals(urlParseQuery(url), u == null ? null : slice(u.getQuery()), s);
+        }
+
+        // common urls never fall back to java.net.URL
+        assertNotNull(UrlSplitter.split(slice("http://foo/bar")));
+        assertNotNull(UrlSplitter.split(slice("http://foo:8080/bar?1=1&b=2")));
+        assertNotNull(UrlSplitter.split(slice("https://api.example.com/v1/users?id=42&sort=asc")));
+    }
+
 }
@@ -5,22 +5,43 @@ package io.resurface.trino.connector;
 import io.trino.spi.HostAddress;
 import io.trino.spi.connector.RecordCursor;
 import io.trino.spi.connector.RecordSet;
+import io.trino.testing.TestingNodeManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static io.resurface.trino.connector.ResurfaceTables.MessageTable.getSchemaTableName;
 import static io.trino.testing.TestingConnectorSession.SESSION;
 import static org.testng.Assert.*;
 
 public class TestResurfaceRecordSet {
 
+    private Path dir;
+
+    // shards are copied per test, so sidecars written by one test are never seen by another
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("shards");
+        Files.copy(Path.of(getClass().getClassLoader().getResource("compressed-files/message.1.blkc").getPath()), dir.resolve("message.1.blkc"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException {
+        deleteRecursively(dir, ALLOW_INSECURE);
+    }
+
     @Test
     public void testCompressedFiles() {
-        String location = getClass().getClassLoader().getResource("compressed-files").getPath();
-        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(location));
-        ResurfaceMetadata metadata = new ResurfaceMetadata(tables);
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
 
         ResurfaceTableHandle tableHandle = new ResurfaceTableHandle(getSchemaTableName());
         List<ResurfaceColumnHandle> columnHandles = metadata.getColumnHandles(SESSION, tableHandle)
@@ -0,0 +1,119 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import com.google.common.collect.ImmutableMap;
+import io.trino.spi.HostAddress;
+import io.trino.spi.connector.ColumnHandle;
+import io.trino.spi.predicate.Domain;
+import io.trino.spi.predicate.TupleDomain;
+import io.trino.spi.statistics.ColumnStatistics;
+import io.trino.spi.statistics.TableStatistics;
+import io.trino.testing.TestingNodeManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.resurface.trino.connector.ResurfaceTables.MessageTable.getSchemaTableName;
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.VarcharType.createUnboundedVarcharType;
+import static io.trino.testing.TestingConnectorSession.SESSION;
+import static org.testng.Assert.*;
+
+public class TestShardIndex {
+
+    private static final ColumnHandle HOST = new ResurfaceColumnHandle("host", createUnboundedVarcharType(), 6);
+    private static final ColumnHandle INTERVAL_MILLIS = new ResurfaceColumnHandle("interval_millis", BIGINT, 7);
+    private static final ColumnHandle BITMAP_ATTACK_INJECTION = new ResurfaceColumnHandle("bitmap_attack_injection", BIGINT, 43);
+
+    private Path dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("shards");
+        Files.copy(Path.of(getClass().getClassLoader().getResource("compressed-files/message.1.blkc").getPath()), dir.resolve("message.1.blkc"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException {
+        deleteRecursively(dir, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testIndexing() throws IOException {
+        Path shard = dir.resolve("message.1.blkc");
+
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceTableHandle handle = new ResurfaceTableHandle(getSchemaTableName());
+        TableStatistics unindexed = tables.getTableStatistics(handle, 1);
+        assertTrue(unindexed.getRowCount().isUnknown());
+
+        try (MessageReader reader = new MessageReader(tables, handle, new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1))) {
+            while (reader.next()) assertNotNull(reader.getShardFile());
+        }
+
+        File f = shard.toFile();
+        assertTrue(new File(f.getParentFile(), f.getName() + ShardIndex.SUFFIX).exists());
+        ShardIndex index = ShardIndex.read(new File(f.getParentFile(), f.getName() + ShardIndex.SUFFIX));
+        assertNotNull(index);
+        assertTrue(index.isCurrent(f));
+        assertEquals(index.getRowCount(), 2);
+
+        assertTrue(index.mayMatch(TupleDomain.all()));
+        assertTrue(index.mayMatch(constraint(INTERVAL_MILLIS, Domain.singleValue(BIGINT, 123456L))));
+        assertFalse(index.mayMatch(constraint(INTERVAL_MILLIS, Domain.singleValue(BIGINT, 5L))));
+        assertTrue(index.mayMatch(constraint(HOST, Domain.singleValue(createUnboundedVarcharType(), utf8Slice("host 😀")))));
+        assertFalse(index.mayMatch(constraint(HOST, Domain.singleValue(createUnboundedVarcharType(), utf8Slice("nowhere.example.com")))));
+        assertTrue(index.mayMatch(constraint(BITMAP_ATTACK_INJECTION, Domain.singleValue(BIGINT, 43L))));
+        assertFalse(index.mayMatch(constraint(BITMAP_ATTACK_INJECTION, Domain.singleValue(BIGINT, 4L))));
+
+        ResurfaceTableHandle matching = new ResurfaceTableHandle(getSchemaTableName(), constraint(INTERVAL_MILLIS, Domain.singleValue(BIGINT, 123456L)));
+        assertEquals(tables.getFiles(matching, 1).size(), 1);
+        ResurfaceTableHandle pruned = new ResurfaceTableHandle(getSchemaTableName(), constraint(INTERVAL_MILLIS, Domain.singleValue(BIGINT, 5L)));
+        assertEquals(tables.getFiles(pruned, 1).size(), 0);
+
+        TableStatistics statistics = tables.getTableStatistics(handle, 3);
+        assertEquals(statistics.getRowCount().getValue(), 6.0);
+        ColumnStatistics host = statistics.getColumnStatistics().get(HOST);
+        assertEquals(host.getNullsFraction().getValue(), 0.0);
+        assertTrue(host.getDistinctValuesCount().getValue() >= 1);
+        assertTrue(host.getDataSize().getValue() > 0);
+        assertTrue(statistics.getColumnStatistics().containsKey(INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void testOrphanedIndex() throws IOException {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        ResurfaceTableHandle handle = new ResurfaceTableHandle(getSchemaTableName());
+        try (MessageReader reader = new MessageReader(tables, handle, new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1))) {
+            while (reader.next()) assertNotNull(reader.getShardFile());
+        }
+        Path sidecar = dir.resolve("message.1.blkc" + ShardIndex.SUFFIX);
+        assertTrue(Files.exists(sidecar));
+
+        // once the shard rolls off, the next listing drops its index too
+        Files.delete(dir.resolve("message.1.blkc"));
+        assertEquals(tables.getFiles(handle, 1).size(), 0);
+        assertFalse(Files.exists(sidecar));
+    }
+
+    @Test
+    public void testStatisticsWithoutShards() {
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.resolve("missing").toString()).setMessagesSlabs(1));
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        assertEquals(metadata.getTableStatistics(SESSION, new ResurfaceTableHandle(getSchemaTableName())), TableStatistics.empty());
+    }
+
+    private static TupleDomain<ColumnHandle> constraint(ColumnHandle column, Domain domain) {
+        return TupleDomain.withColumnDomains(ImmutableMap.of(column, domain));
+    }
+
+}
@@ -0,0 +1,76 @@
+// © 2016-2024 Graylog, Inc.
+
+package io.resurface.trino.connector;
+
+import io.trino.spi.HostAddress;
+import io.trino.spi.connector.RecordCursor;
+import io.trino.testing.TestingNodeManager;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.resurface.trino.connector.ResurfaceTables.RollupTable.getSchemaTableName;
+import static io.trino.testing.TestingConnectorSession.SESSION;
+import static org.testng.Assert.*;
+
+public class TestShardRollup {
+
+    @Test
+    public void testRollup() throws IOException {
+        Path dir = Files.createTempDirectory("shards");
+        Path shard = dir.resolve("message.1.blkc");
+        Files.copy(Path.of(getClass().getClassLoader().getResource("compressed-files/message.1.blkc").getPath()), shard);
+        ResurfaceTables tables = new ResurfaceTables(new ResurfaceConfig().setMessagesDir(dir.toString()).setMessagesSlabs(1));
+        File f = shard.toFile();
+        File rollup = new File(f.getParentFile(), f.getName() + ShardRollup.SUFFIX);
+
+        // open shard is scanned without leaving a rollup behind
+        Files.writeString(dir.resolve("open_shard"), "message.1.blkc");
+        assertRollup(tables);
+        assertFalse(rollup.exists());
+
+        // closed shard is scanned once, then answered from its rollup file
+        Files.delete(dir.resolve("open_shard"));
+        assertRollup(tables);
+        assertTrue(rollup.exists());
+        ShardRollup r = ShardRollup.read(rollup);
+        assertNotNull(r);
+        assertTrue(r.isCurrent(f));
+        assertEquals(r.getGroups().size(), 1);
+        assertRollup(tables);
+        assertEquals(tables.getStats().getScanRows(), 4);
+
+        // once the shard rolls off, the next listing deletes its rollup too
+        Files.delete(shard);
+        assertEquals(tables.getFiles(tables.getTable(getSchemaTableName()), 1).size(), 0);
+        assertFalse(rollup.exists());
+    }
+
+    private void assertRollup(ResurfaceTables tables) {
+        ResurfaceMetadata metadata = new ResurfaceMetadata(new TestingNodeManager(), tables);
+        ResurfaceTableHandle handle = tables.getTable(getSchemaTableName());
+        List<ResurfaceColumnHandle> columns = metadata.getColumnHandles(SESSION, handle)
+                .values().stream().map(column -> (ResurfaceColumnHandle) column)
+                .collect(Collectors.toList());
+
+        ResurfaceSplit split = new ResurfaceSplit(HostAddress.fromParts("localhost", 1234), "test_node_id", 1);
+        try (RecordCursor cursor = new ResurfaceRecordSet(tables, split, handle, columns).cursor()) {
+            assertTrue(cursor.advanceNextPosition());
+            assertEquals(cursor.getLong(0), 120000);                              // minute holding 123456
+            assertEquals(cursor.getSlice(1).toStringUtf8(), "host 😀");
+            assertEquals(cursor.getSlice(2).toStringUtf8(), "response_code 😀");
+            assertEquals(cursor.getLong(3), 2);
+            assertEquals(cursor.getLong(4), 2);
+            assertEquals(cursor.getLong(5), 2468);
+            assertEquals(cursor.getLong(6), 136);
+            assertFalse(cursor.advanceNextPosition());
+            assertTrue(cursor.getCompletedBytes() > 0);
+        }
+    }
+
+}